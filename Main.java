@@ -1,22 +1,32 @@
 import crawler.WebCrawler;
 import utils.DBManager;
+import utils.PageIngestor;
 import indexer.Indexer;
 import search.SearchEngine;
+import utils.Metrics;
 
 import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
-        // Step 1: Crawl websites and save to DB
-        WebCrawler crawler = new WebCrawler();
-        crawler.crawl("https://example.com", 1);  // Crawl first ✅
+        Metrics.startReporting(10_000);  // rates and stage latencies every 10s
 
-        // Step 2: Build the index
+        // Step 1: Crawl websites and save to DB in batched transactions
+        try (PageIngestor ingestor = new PageIngestor()) {
+            WebCrawler crawler = new WebCrawler(ingestor::submit);
+            crawler.crawl("https://example.com", 1);  // Crawl first ✅
+        }  // close() flushes the remaining pages
+
+        // Step 2: Index the new pages (full build only the first time)
         Indexer indexer = new Indexer();
-        indexer.buildIndex();  // Build index after pages are in DB ✅
+        if (!indexer.open()) {
+            indexer.buildIndex();
+        } else {
+            indexer.updateIndex();  // Only pages crawled since the last run ✅
+        }
 
         // Step 3: Use search engine to query
-        SearchEngine engine = new SearchEngine();  // Loads inverted index
+        SearchEngine engine = new SearchEngine(indexer);  // Searches the index built above, no second copy
 
         String userId = "user123";
         List<String> results = engine.search(userId, "example domain");
@@ -29,5 +39,10 @@ public class Main {
         for (String url : results) {
             System.out.println("🔗 " + url);
         }
+
+        engine.close();  // Writes out the query log and closes the index ✅
+
+        // Step 5: Totals and latency percentiles for the whole run
+        System.out.print(Metrics.report());
     }
 }
@@ -1,15 +1,14 @@
-import java.sql.Connection;
-import java.sql.DriverManager;
+import utils.Database;
 
 public class SQLiteInit {
     public static void main(String[] args) {
         try {
-            String url = "jdbc:sqlite:searchengine.db";
-            Connection conn = DriverManager.getConnection(url);
-            if (conn != null) {
-                System.out.println("Database created or opened successfully.");
-                conn.close();
-            }
+            if (args.length > 0) Database.configure(args[0]);
+            Database.write(db -> {
+                System.out.println("Database created or opened successfully: " + Database.path());
+                return null;
+            });
+            Database.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -1,42 +1,274 @@
 package autocomplete;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
+// Immutable, array-based trie for prefix completion, ranked by word weight.
+// Words are sorted, so every node's subtree is a contiguous word range; each node
+// with more than TOP_K words caches its TOP_K heaviest, so a lookup is a walk down
+// the prefix plus a copy of at most TOP_K entries, however many words match.
+// Nodes are parallel int/char arrays (children contiguous, sorted by label) and the
+// words share one char pool, so the whole structure saves and loads as a few bulk
+// array copies.
 public class AutocompleteTrie {
-    private static class TrieNode {
-        Map<Character, TrieNode> children = new HashMap<>();
-        boolean isWord = false;
+    public static final int DEFAULT_LIMIT = 10;
+    static final int TOP_K = 10;
+    private static final int MAGIC = 0x41435452;  // "ACTR"
+    private static final int VERSION = 1;
+
+    // Words, sorted, and their weights
+    private final char[] chars;
+    private final int[] wordStarts;  // word i is chars[wordStarts[i] .. wordStarts[i + 1])
+    private final int[] weights;
+
+    // Nodes; node 0 is the root
+    private final char[] labels;
+    private final int[] rangeStarts;   // first word in the subtree
+    private final int[] rangeEnds;     // one past the last
+    private final int[] firstChild;
+    private final int[] childCounts;
+    private final int[] topStarts;     // into topWords, or -1 when the range is small enough to rank directly
+    private final int[] topWords;      // TOP_K word ids per cached list, heaviest first
+
+    private AutocompleteTrie(char[] chars, int[] wordStarts, int[] weights, char[] labels, int[] rangeStarts,
+                             int[] rangeEnds, int[] firstChild, int[] childCounts, int[] topStarts,
+                             int[] topWords) {
+        this.chars = chars;
+        this.wordStarts = wordStarts;
+        this.weights = weights;
+        this.labels = labels;
+        this.rangeStarts = rangeStarts;
+        this.rangeEnds = rangeEnds;
+        this.firstChild = firstChild;
+        this.childCounts = childCounts;
+        this.topStarts = topStarts;
+        this.topWords = topWords;
     }
 
-    private final TrieNode root = new TrieNode();
+    public static AutocompleteTrie empty() {
+        return new Builder().build();
+    }
 
-    public void insert(String word) {
-        TrieNode node = root;
-        for (char ch : word.toCharArray()) {
-            node = node.children.computeIfAbsent(ch, c -> new TrieNode());
-        }
-        node.isWord = true;
+    public int size() {
+        return weights.length;
     }
 
     public List<String> autocomplete(String prefix) {
+        return autocomplete(prefix, DEFAULT_LIMIT);
+    }
+
+    // Up to `limit` words starting with prefix, heaviest first (ties in word order)
+    public List<String> autocomplete(String prefix, int limit) {
         List<String> results = new ArrayList<>();
-        TrieNode node = root;
+        if (limit <= 0) return results;
 
-        for (char ch : prefix.toCharArray()) {
-            node = node.children.get(ch);
-            if (node == null) return results;
-        }
+        // 1. Walk down the prefix, binary searching each node's children
+        int node = 0;
+        for (int i = 0; i < prefix.length() && node >= 0; i++) node = child(node, prefix.charAt(i));
+        if (node < 0) return results;
 
-        dfs(node, new StringBuilder(prefix), results);
+        // 2. Cached list, or rank the (small, or over-limit) range directly
+        if (topStarts[node] >= 0 && limit <= TOP_K) {
+            for (int i = 0; i < limit; i++) results.add(word(topWords[topStarts[node] + i]));
+            return results;
+        }
+        for (int word : heaviest(rangeStarts[node], rangeEnds[node], limit)) results.add(word(word));
         return results;
     }
 
-    private void dfs(TrieNode node, StringBuilder prefix, List<String> results) {
-        if (node.isWord) results.add(prefix.toString());
-        for (char ch : node.children.keySet()) {
-            prefix.append(ch);
-            dfs(node.children.get(ch), prefix, results);
-            prefix.setLength(prefix.length() - 1);
+    private int child(int node, char label) {
+        int lo = firstChild[node], hi = lo + childCounts[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (labels[mid] < label) lo = mid + 1;
+            else if (labels[mid] > label) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private String word(int id) {
+        return new String(chars, wordStarts[id], wordStarts[id + 1] - wordStarts[id]);
+    }
+
+    // Ids of the `limit` heaviest words in [from, to), heaviest first
+    private int[] heaviest(int from, int to, int limit) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(limit, to - from) + 1,
+                (a, b) -> compareWords(weights, a, b));
+        for (int id = from; id < to; id++) {
+            heap.add(id);
+            if (heap.size() > limit) heap.poll();
+        }
+        int[] ids = new int[heap.size()];
+        for (int i = ids.length - 1; i >= 0; i--) ids[i] = heap.poll();
+        return ids;
+    }
+
+    // Ascending "quality": lighter words first, then later words (so heaviest, then A-Z, wins)
+    private static int compareWords(int[] weights, int a, int b) {
+        int cmp = Integer.compare(weights[a], weights[b]);
+        return cmp != 0 ? cmp : Integer.compare(b, a);
+    }
+
+    // The arrays in order, each prefixed with its length
+    public void save(Path path) throws IOException {
+        int[][] ints = {wordStarts, weights, rangeStarts, rangeEnds, firstChild, childCounts, topStarts, topWords};
+        long bytes = 8 + 4L + chars.length * 2L + 4L + labels.length * 2L;
+        for (int[] array : ints) bytes += 4 + array.length * 4L;
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(bytes));
+        buf.putInt(MAGIC).putInt(VERSION);
+        putChars(buf, chars);
+        putChars(buf, labels);
+        for (int[] array : ints) {
+            buf.putInt(array.length);
+            buf.asIntBuffer().put(array);
+            buf.position(buf.position() + array.length * 4);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, buf.array());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static AutocompleteTrie load(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("Not an autocomplete file: " + path);
+        }
+        char[] chars = getChars(buf);
+        char[] labels = getChars(buf);
+        int[][] ints = new int[8][];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = new int[buf.getInt()];
+            buf.asIntBuffer().get(ints[i]);
+            buf.position(buf.position() + ints[i].length * 4);
+        }
+        return new AutocompleteTrie(chars, ints[0], ints[1], labels, ints[2], ints[3], ints[4], ints[5],
+                ints[6], ints[7]);
+    }
+
+    private static void putChars(ByteBuffer buf, char[] array) {
+        buf.putInt(array.length);
+        buf.asCharBuffer().put(array);
+        buf.position(buf.position() + array.length * 2);
+    }
+
+    private static char[] getChars(ByteBuffer buf) {
+        char[] array = new char[buf.getInt()];
+        buf.asCharBuffer().get(array);
+        buf.position(buf.position() + array.length * 2);
+        return array;
+    }
+
+    // Collects (word, weight) pairs; repeated words add up
+    public static class Builder {
+        private final Map<String, Long> words = new HashMap<>();
+
+        public Builder add(String word, long weight) {
+            if (!word.isEmpty()) words.merge(word, weight, Long::sum);
+            return this;
+        }
+
+        public AutocompleteTrie build() {
+            // 1. Sorted words in one char pool
+            String[] sorted = words.keySet().toArray(new String[0]);
+            Arrays.sort(sorted);
+            int n = sorted.length;
+            int[] wordStarts = new int[n + 1];
+            int[] weights = new int[n];
+            StringBuilder pool = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                wordStarts[i] = pool.length();
+                pool.append(sorted[i]);
+                weights[i] = (int) Math.min(Integer.MAX_VALUE, words.get(sorted[i]));
+            }
+            wordStarts[n] = pool.length();
+            char[] chars = pool.toString().toCharArray();
+
+            // 2. Nodes, breadth first so each node's children are contiguous. A node at
+            // depth d over words [lo, hi) has one child per distinct char at position d.
+            Nodes nodes = new Nodes();
+            nodes.add('\0', 0, n, 0);
+            for (int node = 0; node < nodes.size; node++) {
+                int depth = nodes.depths[node];
+                int lo = nodes.rangeStarts[node], hi = nodes.rangeEnds[node];
+                if (lo < hi && sorted[lo].length() == depth) lo++;  // the word ending here sorts first
+                nodes.firstChild[node] = nodes.size;
+                while (lo < hi) {
+                    char label = sorted[lo].charAt(depth);
+                    int end = lo + 1;
+                    while (end < hi && sorted[end].charAt(depth) == label) end++;
+                    nodes.add(label, lo, end, depth + 1);
+                    lo = end;
+                }
+                nodes.childCounts[node] = nodes.size - nodes.firstChild[node];
+            }
+
+            // 3. Top-k lists bottom up (children always come after their parent). A node
+            // whose only content is a single child shares that child's list.
+            int count = nodes.size;
+            int[] topStarts = new int[count];
+            Arrays.fill(topStarts, -1);
+            int[] topWords = new int[16 * TOP_K];
+            int topSize = 0;
+            for (int node = count - 1; node >= 0; node--) {
+                int lo = nodes.rangeStarts[node], hi = nodes.rangeEnds[node];
+                if (hi - lo <= TOP_K) continue;
+                int first = nodes.firstChild[node];
+                boolean endsWord = sorted[lo].length() == nodes.depths[node];
+                if (nodes.childCounts[node] == 1 && !endsWord) {
+                    topStarts[node] = topStarts[first];
+                    continue;
+                }
+                List<Integer> candidates = new ArrayList<>();
+                if (endsWord) candidates.add(lo);
+                for (int c = first; c < first + nodes.childCounts[node]; c++) {
+                    if (topStarts[c] >= 0) {
+                        for (int i = 0; i < TOP_K; i++) candidates.add(topWords[topStarts[c] + i]);
+                    } else {
+                        for (int id = nodes.rangeStarts[c]; id < nodes.rangeEnds[c]; id++) candidates.add(id);
+                    }
+                }
+                candidates.sort((a, b) -> compareWords(weights, b, a));
+                if (topSize + TOP_K > topWords.length) topWords = Arrays.copyOf(topWords, topWords.length * 2);
+                topStarts[node] = topSize;
+                for (int i = 0; i < TOP_K; i++) topWords[topSize++] = candidates.get(i);
+            }
+
+            return new AutocompleteTrie(chars, wordStarts, weights, Arrays.copyOf(nodes.labels, count),
+                    Arrays.copyOf(nodes.rangeStarts, count), Arrays.copyOf(nodes.rangeEnds, count),
+                    Arrays.copyOf(nodes.firstChild, count), Arrays.copyOf(nodes.childCounts, count), topStarts,
+                    Arrays.copyOf(topWords, topSize));
+        }
+    }
+
+    // Growable node arrays used while building
+    private static class Nodes {
+        char[] labels = new char[1024];
+        int[] rangeStarts = new int[1024];
+        int[] rangeEnds = new int[1024];
+        int[] firstChild = new int[1024];
+        int[] childCounts = new int[1024];
+        int[] depths = new int[1024];
+        int size = 0;
+
+        void add(char label, int rangeStart, int rangeEnd, int depth) {
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, size * 2);
+                rangeStarts = Arrays.copyOf(rangeStarts, size * 2);
+                rangeEnds = Arrays.copyOf(rangeEnds, size * 2);
+                firstChild = Arrays.copyOf(firstChild, size * 2);
+                childCounts = Arrays.copyOf(childCounts, size * 2);
+                depths = Arrays.copyOf(depths, size * 2);
+            }
+            labels[size] = label;
+            rangeStarts[size] = rangeStart;
+            rangeEnds[size] = rangeEnd;
+            depths[size] = depth;
+            size++;
         }
     }
 }
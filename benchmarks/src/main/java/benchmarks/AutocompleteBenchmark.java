@@ -0,0 +1,53 @@
+package benchmarks;
+
+import indexer.Indexer;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Suggestion latency by prefix length; prefixes are cut from Zipf-sampled words,
+// so short prefixes match large parts of the vocabulary.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AutocompleteBenchmark {
+    private static final int PREFIXES = 1024;
+
+    @Param("10000")
+    public int pages;
+
+    @Param({"1", "2", "3", "5"})
+    public int prefixLength;
+
+    private Indexer indexer;
+    private String[] prefixes;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        indexer = IndexedCorpus.open(pages);
+        CorpusGenerator corpus = new CorpusGenerator(CorpusGenerator.Config.ofPages(pages));
+        Random random = new Random(11);
+        prefixes = new String[PREFIXES];
+        for (int i = 0; i < PREFIXES; i++) {
+            String word = corpus.sampleWord(random);
+            prefixes[i] = word.substring(0, Math.min(prefixLength, word.length()));
+        }
+        indexer.getAutocompleteSuggestions("");  // load the vocabulary outside the measurement
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        indexer.close();
+    }
+
+    @Benchmark
+    public List<String> autocomplete() {
+        return indexer.getAutocompleteSuggestions(prefixes[next++ % PREFIXES]);
+    }
+}
@@ -0,0 +1,19 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// JMH's command line, writing results as JSON (jmh-result.json) unless another
+// result format or file is given, e.g.
+//   java -jar benchmarks/target/benchmarks.jar SearchBenchmark -p pages=100000 -rff search.json
+public final class BenchmarkMain {
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) options.addAll(List.of("-rf", "json"));
+        if (!options.contains("-rff")) options.addAll(List.of("-rff", "jmh-result.json"));
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,225 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import utils.DBManager;
+import utils.Database;
+import utils.PageIngestor;
+
+// Deterministic synthetic crawl: the same Config always produces the same pages table.
+// Words follow a Zipf distribution over a generated vocabulary (so a few words are in
+// nearly every page and most are rare), pages spread over Zipf-popular domains and a
+// year of crawl dates, and links form a power-law graph: out-degrees are Pareto
+// distributed and targets are picked by Zipf popularity, with a share of links to
+// pages that were never crawled. Pages go through PageIngestor, like a real crawl.
+public final class CorpusGenerator {
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "de", "po", "ga", "li", "mo", "nu", "re", "si",
+        "ta", "ve", "bo", "ci", "du", "fe", "go", "ha", "ji", "ko", "la", "me", "ni", "pu", "ro", "su"
+    };
+    private static final double WORD_SKEW = 1.0;
+    private static final double DOMAIN_SKEW = 1.1;
+    private static final double LINK_SKEW = 0.9;
+    private static final double PARETO_ALPHA = 2.0;
+    private static final double EXTERNAL_LINK_SHARE = 0.1;  // links to pages that were never crawled
+    private static final LocalDateTime FIRST_CRAWL = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final DateTimeFormatter SQL_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public record Config(int pages, int vocabulary, int wordsPerPage, int domains, int linksPerPage, long seed) {
+        public static Config ofPages(int pages) {
+            return new Config(pages, 50_000, 300, 200, 8, 42L);
+        }
+
+        // File name for this corpus, so benchmark forks can reuse one generated database
+        String key() {
+            return "corpus-p" + pages + "-v" + vocabulary + "-w" + wordsPerPage + "-d" + domains
+                    + "-l" + linksPerPage + "-s" + seed;
+        }
+    }
+
+    private final Config config;
+    private final String[] words;
+    private final Zipf wordRanks;
+
+    public CorpusGenerator(Config config) {
+        this.config = config;
+        this.words = new String[config.vocabulary()];
+        for (int i = 0; i < words.length; i++) words[i] = word(i);
+        this.wordRanks = new Zipf(config.vocabulary(), WORD_SKEW);
+    }
+
+    // Rank 0 is the most frequent word
+    public String word(int rank) {
+        StringBuilder word = new StringBuilder();
+        int n = rank + SYLLABLES.length;  // at least two syllables
+        while (n > 0) {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        }
+        return word.toString();
+    }
+
+    // A word drawn with the corpus' own frequencies, e.g. to build realistic queries
+    public String sampleWord(Random random) {
+        return words[wordRanks.sample(random)];
+    }
+
+    public static String domain(int rank) {
+        return "site" + rank + ".example";
+    }
+
+    // Generates into `database` (replacing it); the index is left for the caller to build
+    public void generate(Path database) throws IOException {
+        Files.deleteIfExists(database);
+        Database.configure(database.toString());
+        DBManager.initDB();
+        DBManager.createUserQueryTable();
+
+        // 1. Page urls first, so links can point at any page
+        Random random = new Random(config.seed());
+        Zipf domainRanks = new Zipf(config.domains(), DOMAIN_SKEW);
+        int pages = config.pages();
+        String[] urls = new String[pages];
+        for (int i = 0; i < pages; i++) urls[i] = "https://" + domain(domainRanks.sample(random)) + "/page/" + i;
+        int[] popularity = shuffledRanks(pages, random);  // popularity[r]: page with the r-th most inbound links
+        Zipf linkRanks = new Zipf(pages, LINK_SKEW);
+
+        // 2. Text and links through the batched ingestion path
+        long start = System.nanoTime();
+        try (PageIngestor ingestor = new PageIngestor()) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < pages; i++) {
+                text.setLength(0);
+                int titleWords = 3 + random.nextInt(4);
+                for (int w = 0; w < titleWords; w++) text.append(w == 0 ? "" : " ").append(sampleWord(random));
+                String title = Character.toUpperCase(text.charAt(0)) + text.substring(1);
+
+                text.setLength(0);
+                int length = config.wordsPerPage() / 2 + random.nextInt(config.wordsPerPage() + 1);
+                for (int w = 0; w < length; w++) {
+                    text.append(sampleWord(random));
+                    text.append(random.nextInt(12) == 0 ? ". " : " ");
+                }
+
+                List<String> links = new ArrayList<>();
+                double pareto = Math.pow(1 - random.nextDouble(), -1 / PARETO_ALPHA);
+                int degree = (int) (config.linksPerPage() * (PARETO_ALPHA - 1) / PARETO_ALPHA * pareto);
+                for (int l = 0; l < degree; l++) {
+                    if (random.nextDouble() < EXTERNAL_LINK_SHARE) {
+                        links.add("https://external" + random.nextInt(1000) + ".example/" + random.nextInt(pages));
+                    } else {
+                        links.add(urls[popularity[linkRanks.sample(random)]]);
+                    }
+                }
+                ingestor.submit(urls[i], title, text.toString(), links);
+            }
+        }
+
+        // 3. Crawl dates spread over a year, so date filters select a real share of pages
+        try {
+            Database.transaction(db -> {
+                PreparedStatement update = db.prepare("UPDATE pages SET crawled_at = ? WHERE url = ?");
+                try {
+                    for (int i = 0; i < pages; i++) {
+                        LocalDateTime crawled = FIRST_CRAWL.plusMinutes((long) i * 365 * 24 * 60 / pages);
+                        update.setString(1, crawled.format(SQL_TIME));
+                        update.setString(2, urls[i]);
+                        update.addBatch();
+                    }
+                    return update.executeBatch();
+                } finally {
+                    update.clearBatch();
+                }
+            });
+        } catch (Exception e) {
+            throw new IOException("Could not set crawl dates", e);
+        }
+        System.out.println("🧪 Generated " + pages + " pages in " + (System.nanoTime() - start) / 1_000_000
+                + " ms: " + database);
+    }
+
+    // The corpus database for config under java.io.tmpdir, generated on first use, with
+    // Database pointed at it. Generation writes to a temp file first, so a run killed
+    // halfway never leaves a partial corpus behind to be reused.
+    public static Path prepare(Config config) throws IOException {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "personal-search-benchmarks");
+        Files.createDirectories(directory);
+        Path database = directory.resolve(config.key() + ".db");
+        if (!Files.exists(database)) {
+            Path partial = directory.resolve(config.key() + ".partial.db");
+            new CorpusGenerator(config).generate(partial);
+            Database.close();
+            Files.move(partial, database, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Database.configure(database.toString());
+        DBManager.initDB();
+        DBManager.createUserQueryTable();
+        return database;
+    }
+
+    private static int[] shuffledRanks(int n, Random random) {
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) ranks[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = swap;
+        }
+        return ranks;
+    }
+
+    // Ranks 0..n-1 with P(r) proportional to 1 / (r + 1)^skew, sampled by binary search on the CDF
+    static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double skew) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int r = 0; r < n; r++) {
+                sum += 1 / Math.pow(r + 1, skew);
+                cdf[r] = sum;
+            }
+            for (int r = 0; r < n; r++) cdf[r] /= sum;
+        }
+
+        int sample(Random random) {
+            int i = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+        }
+    }
+
+    // Writes a corpus to a chosen file:
+    //   java -cp target/benchmarks.jar benchmarks.CorpusGenerator --pages 100000 --out corpus.db
+    public static void main(String[] args) throws IOException {
+        Config defaults = Config.ofPages(10_000);
+        int pages = defaults.pages(), vocabulary = defaults.vocabulary(), wordsPerPage = defaults.wordsPerPage();
+        int domains = defaults.domains(), linksPerPage = defaults.linksPerPage();
+        long seed = defaults.seed();
+        Path out = Path.of("corpus.db");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--pages" -> pages = Integer.parseInt(value);
+                case "--vocabulary" -> vocabulary = Integer.parseInt(value);
+                case "--words" -> wordsPerPage = Integer.parseInt(value);
+                case "--domains" -> domains = Integer.parseInt(value);
+                case "--links" -> linksPerPage = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        new CorpusGenerator(new Config(pages, vocabulary, wordsPerPage, domains, linksPerPage, seed)).generate(out);
+        Database.close();
+    }
+}
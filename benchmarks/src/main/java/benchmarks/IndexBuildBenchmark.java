@@ -0,0 +1,43 @@
+package benchmarks;
+
+import indexer.Analyzer;
+import indexer.Bm25;
+import indexer.Indexer;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Full index build (read pages, analyze, write and open one segment per shard). Each
+// measurement is one build, so throughput in pages/s is pages / score.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexBuildBenchmark {
+    @Param("10000")
+    public int pages;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    private Indexer indexer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        CorpusGenerator.prepare(CorpusGenerator.Config.ofPages(pages));
+        indexer = new Indexer(Analyzer.standard(), true, Bm25.standard(), shards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        indexer.close();
+    }
+
+    @Benchmark
+    public long buildIndex() {
+        indexer.buildIndex();
+        return indexer.getGeneration();
+    }
+}
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import indexer.Analyzer;
+import indexer.Bm25;
+import indexer.Indexer;
+import java.io.IOException;
+
+// A generated corpus with its index built (reused from an earlier fork when present)
+final class IndexedCorpus {
+    private IndexedCorpus() {}
+
+    // Whatever shard count the persisted index has
+    static Indexer open(int pages) throws IOException {
+        CorpusGenerator.prepare(CorpusGenerator.Config.ofPages(pages));
+        Indexer indexer = new Indexer();
+        if (!indexer.open() || indexer.isStale()) indexer.buildIndex();
+        return indexer;
+    }
+
+    // Rebuilt when the persisted index has a different shard count
+    static Indexer open(int pages, int shards) throws IOException {
+        CorpusGenerator.prepare(CorpusGenerator.Config.ofPages(pages));
+        Indexer indexer = new Indexer(Analyzer.standard(), true, Bm25.standard(), shards);
+        if (!indexer.open() || indexer.isStale() || indexer.getShardCount() != shards) indexer.buildIndex();
+        return indexer;
+    }
+}
@@ -0,0 +1,197 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import search.SearchEngine;
+import search.SearchServer;
+import utils.LatencyHistogram;
+
+// Closed-loop HTTP load against SearchServer: each client (a virtual thread) sends its
+// next query as soon as the previous answer arrives, so throughput and tail latency
+// are measured together. Without --url it starts a server in process over a generated
+// corpus. Queries are corpus words (one to three, as in SearchBenchmark) mixed with
+// autocomplete prefixes.
+//   java -cp benchmarks/target/benchmarks.jar benchmarks.LoadGenerator --clients 256 --seconds 30
+//   java -cp benchmarks/target/benchmarks.jar benchmarks.LoadGenerator --url http://localhost:8080
+public final class LoadGenerator {
+    private static final int QUERY_COUNT = 4096;
+    private static final double AUTOCOMPLETE_SHARE = 0.2;
+
+    private final String baseUrl;
+    private final String[] paths;
+    private final HttpClient client;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean recording = false;
+    private volatile boolean running = true;
+
+    LoadGenerator(String baseUrl, String[] paths) {
+        this.baseUrl = baseUrl;
+        this.paths = paths;
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    // Request paths drawn from the corpus vocabulary, deterministic for a given seed
+    static String[] paths(CorpusGenerator corpus, long seed) {
+        Random random = new Random(seed);
+        String[] paths = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            if (random.nextDouble() < AUTOCOMPLETE_SHARE) {
+                String word = corpus.sampleWord(random);
+                String prefix = word.substring(0, Math.min(word.length(), 1 + random.nextInt(4)));
+                paths[i] = "/autocomplete?prefix=" + encode(prefix);
+            } else {
+                int words = 1 + random.nextInt(3);
+                StringBuilder query = new StringBuilder();
+                for (int w = 0; w < words; w++) query.append(w == 0 ? "" : " ").append(corpus.sampleWord(random));
+                paths[i] = "/search?q=" + encode(query.toString()) + "&user=load" + random.nextInt(100);
+            }
+        }
+        return paths;
+    }
+
+    // Runs `clients` loops for warmup + measurement; only the measurement is recorded
+    Report run(int clients, Duration warmup, Duration measurement) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            int offset = c * (paths.length / Math.max(1, clients));
+            threads.add(Thread.ofVirtual().name("load-" + c).start(() -> loop(offset)));
+        }
+        Thread.sleep(warmup.toMillis());
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(measurement.toMillis());
+        LatencyHistogram.Snapshot snapshot = latencies.snapshot();
+        long errorCount = errors.sum();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread thread : threads) thread.join();
+        return new Report(clients, seconds, snapshot, errorCount);
+    }
+
+    private void loop(int offset) {
+        for (int i = offset; running; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + paths[i % paths.length]))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode() == 200;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!recording) continue;
+            if (ok) latencies.recordSince(start);
+            else errors.increment();
+        }
+    }
+
+    record Report(int clients, double seconds, LatencyHistogram.Snapshot latencies, long errors) {
+        double qps() {
+            return latencies.count() / seconds;
+        }
+
+        void print() {
+            System.out.printf("🚀 %d clients, %.1fs: %,d requests, %,.0f req/s, %d errors%n",
+                    clients, seconds, latencies.count(), qps(), errors);
+            System.out.printf("   latency p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                    ms(latencies.percentile(0.50)), ms(latencies.percentile(0.90)),
+                    ms(latencies.percentile(0.99)), ms(latencies.percentile(0.999)), ms(latencies.max()));
+        }
+
+        String json() {
+            return String.format(Locale.ROOT,
+                    "{\"clients\":%d,\"seconds\":%.3f,\"requests\":%d,\"errors\":%d,\"qps\":%.1f,"
+                            + "\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f}",
+                    clients, seconds, latencies.count(), errors, qps(),
+                    ms(latencies.percentile(0.50)), ms(latencies.percentile(0.90)),
+                    ms(latencies.percentile(0.99)), ms(latencies.percentile(0.999)), ms(latencies.max()));
+        }
+
+        private static double ms(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pages = 10_000;
+        int[] clientCounts = {64};
+        int warmupSeconds = 5, seconds = 20;
+        String url = null;
+        Path out = Path.of("load-result.json");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--pages" -> pages = Integer.parseInt(value);
+                case "--clients" -> {  // one count or a comma-separated sweep, e.g. 1,16,256
+                    String[] counts = value.split(",");
+                    clientCounts = new int[counts.length];
+                    for (int c = 0; c < counts.length; c++) clientCounts[c] = Integer.parseInt(counts[c].trim());
+                }
+                case "--warmup" -> warmupSeconds = Integer.parseInt(value);
+                case "--seconds" -> seconds = Integer.parseInt(value);
+                case "--url" -> url = value;
+                case "--out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        // Queries always come from the generated vocabulary; against --url they only hit
+        // if that server indexes the same kind of corpus
+        CorpusGenerator.Config config = CorpusGenerator.Config.ofPages(pages);
+        String[] paths = paths(new CorpusGenerator(config), config.seed());
+
+        SearchEngine engine = null;
+        SearchServer server = null;
+        if (url == null) {
+            IndexedCorpus.open(pages).close();
+            engine = new SearchEngine();
+            server = new SearchServer(engine, 0);
+            server.start();
+            url = "http://localhost:" + server.port();
+        }
+
+        List<String> results = new ArrayList<>();
+        try {
+            for (int clients : clientCounts) {
+                LoadGenerator generator = new LoadGenerator(url, paths);
+                Report report = generator.run(clients, Duration.ofSeconds(warmupSeconds), Duration.ofSeconds(seconds));
+                report.print();
+                results.add(report.json());
+            }
+        } finally {
+            if (server != null) server.close();
+            if (engine != null) engine.close();
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            writer.println("[" + String.join(",\n ", results) + "]");
+        }
+        System.out.println("📄 Results written to " + out);
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import indexer.Indexer;
+import indexer.LinkGraph;
+import indexer.PageRank;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// PageRank phases: loading the link graph, one power iteration (scored per
+// iteration), and the whole computePageRank (load, iterate to convergence, store).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageRankBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Param("10000")
+    public int pages;
+
+    private Indexer indexer;
+    private LinkGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        indexer = IndexedCorpus.open(pages);
+        graph = LinkGraph.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        indexer.close();
+    }
+
+    @Benchmark
+    public LinkGraph loadGraph() throws SQLException {
+        return LinkGraph.load();
+    }
+
+    // Tolerance 0 forces exactly ITERATIONS iterations
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public PageRank.Result iteration() {
+        return PageRank.compute(graph, PageRank.DEFAULT_DAMPING, 0, ITERATIONS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 5)
+    public void computePageRank() {
+        indexer.computePageRank();
+    }
+}
@@ -0,0 +1,107 @@
+package benchmarks;
+
+import indexer.Indexer;
+import indexer.SearchFilters;
+import indexer.SearchResult;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import utils.UserProfile;
+
+// Top-10 query latency. Each call takes the next of QUERIES distinct queries, more than
+// the result cache holds, so every search is computed (uncached) as for a new query.
+// Query words are drawn with the corpus' Zipf frequencies. With several shards each
+// query is ranked on all of them in parallel, so compare shard counts on a multi-core machine.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final int QUERIES = 4096;
+    private static final int K = 10;
+
+    @Param("10000")
+    public int pages;
+
+    @Param({"1", "4"})
+    public int shards;
+
+    private Indexer indexer;
+    private String[] singleTerm;
+    private String[] multiTerm;
+    private UserProfile profile;
+    private SearchFilters siteFilter;
+    private SearchFilters dateFilter;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        indexer = IndexedCorpus.open(pages, shards);
+        CorpusGenerator corpus = new CorpusGenerator(CorpusGenerator.Config.ofPages(pages));
+        Random random = new Random(7);
+        singleTerm = queries(corpus, random, 1, 1);
+        multiTerm = queries(corpus, random, 2, 3);
+
+        // A user with some history, and filters matching the top domain and the last half year
+        for (int i = 0; i < 20; i++) indexer.getProfiles().record("bench-user", multiTerm[i]);
+        profile = indexer.getProfiles().get("bench-user");
+        siteFilter = new SearchFilters(CorpusGenerator.domain(0), null);
+        dateFilter = new SearchFilters(null, "2024-07-01");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        indexer.close();
+    }
+
+    private static String[] queries(CorpusGenerator corpus, Random random, int minWords, int maxWords) {
+        Set<String> queries = new LinkedHashSet<>();
+        for (int attempt = 0; queries.size() < QUERIES && attempt < QUERIES * 100; attempt++) {
+            int words = minWords + random.nextInt(maxWords - minWords + 1);
+            StringBuilder query = new StringBuilder();
+            for (int w = 0; w < words; w++) query.append(w == 0 ? "" : " ").append(corpus.sampleWord(random));
+            queries.add(query.toString());
+        }
+        return queries.toArray(new String[0]);
+    }
+
+    private String next(String[] queries) {
+        return queries[next++ % queries.length];
+    }
+
+    @Benchmark
+    public List<SearchResult> singleTerm() {
+        return indexer.search(next(singleTerm), K, SearchFilters.NONE);
+    }
+
+    @Benchmark
+    public List<SearchResult> multiTerm() {
+        return indexer.search(next(multiTerm), K, SearchFilters.NONE);
+    }
+
+    @Benchmark
+    public List<SearchResult> singleTermPersonalized() {
+        return indexer.search(next(singleTerm), K, SearchFilters.NONE, profile);
+    }
+
+    @Benchmark
+    public List<SearchResult> multiTermPersonalized() {
+        return indexer.search(next(multiTerm), K, SearchFilters.NONE, profile);
+    }
+
+    @Benchmark
+    public List<SearchResult> multiTermSiteFilter() {
+        return indexer.search(next(multiTerm), K, siteFilter);
+    }
+
+    @Benchmark
+    public List<SearchResult> multiTermDateFilter() {
+        return indexer.search(next(multiTerm), K, dateFilter);
+    }
+}
@@ -0,0 +1,54 @@
+package crawler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Per-host politeness: caps concurrent connections and spaces out request starts
+public class HostThrottle {
+    private final int maxConnectionsPerHost;
+    private final long minDelayNanos;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    private static class HostState {
+        final Semaphore connections;
+        long nextStartNanos = System.nanoTime();
+
+        HostState(int maxConnections) {
+            this.connections = new Semaphore(maxConnections);
+        }
+    }
+
+    public HostThrottle(int maxConnectionsPerHost, long minDelayMillis) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+    }
+
+    // Blocks until a connection slot is free and the host's rate limit allows a new request
+    public void acquire(String host) throws InterruptedException {
+        HostState state = hosts.computeIfAbsent(host, h -> new HostState(maxConnectionsPerHost));
+        state.connections.acquire();
+
+        long waitNanos;
+        synchronized (state) {
+            long now = System.nanoTime();
+            long start = Math.max(now, state.nextStartNanos);
+            state.nextStartNanos = start + minDelayNanos;
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                state.connections.release();
+                throw e;
+            }
+        }
+    }
+
+    public void release(String host) {
+        HostState state = hosts.get(host);
+        if (state != null) state.connections.release();
+    }
+}
@@ -0,0 +1,9 @@
+package crawler;
+
+import java.util.List;
+
+// Receives every successfully fetched page; called concurrently from crawler threads
+@FunctionalInterface
+public interface PageSink {
+    void accept(String url, String title, String content, List<String> links);
+}
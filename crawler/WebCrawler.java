@@ -6,57 +6,169 @@ import org.jsoup.select.Elements;
 import org.jsoup.nodes.Element;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.net.URI;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.jsoup.Connection;
 import utils.DBManager;
+import utils.LatencyHistogram;
+import utils.Metrics;
 
 public class WebCrawler {
-    private Set<String> visited = new HashSet<>();
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    private static final int DEFAULT_CONNECTIONS_PER_HOST = 4;
+    private static final long DEFAULT_HOST_DELAY_MS = 250;
+    private static final int DEFAULT_MAX_PAGES = 5000;
+    private static final int FETCH_TIMEOUT_MS = 10_000;
+    private static final LongAdder PAGES = Metrics.counter("crawler.pages");
+    private static final LongAdder BYTES = Metrics.counter("crawler.bytes");
+    private static final LongAdder FAILURES = Metrics.counter("crawler.failures");
+    private static final LatencyHistogram THROTTLE_TIME = Metrics.histogram("crawler.throttle_wait");
+    private static final LatencyHistogram FETCH_TIME = Metrics.histogram("crawler.fetch");
+    private static final LatencyHistogram PARSE_TIME = Metrics.histogram("crawler.parse");
 
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final PageSink sink;
+    private final HostThrottle throttle;
+    private final int maxInFlight;
+    private final int maxPages;
+    private final AtomicInteger pagesCrawled = new AtomicInteger();
+
+    private record CrawlTask(String url, int depth) {}
+
+    public WebCrawler() {
+        this(DBManager::savePage);
+    }
+
+    public WebCrawler(PageSink sink) {
+        this(sink, DEFAULT_MAX_IN_FLIGHT, DEFAULT_CONNECTIONS_PER_HOST, DEFAULT_HOST_DELAY_MS, DEFAULT_MAX_PAGES);
+    }
+
+    public WebCrawler(PageSink sink, int maxInFlight, int connectionsPerHost, long hostDelayMillis, int maxPages) {
+        this.sink = sink;
+        this.throttle = new HostThrottle(connectionsPerHost, hostDelayMillis);
+        this.maxInFlight = maxInFlight;
+        this.maxPages = maxPages;
+    }
+
+    // Breadth-first crawl from the seed; depth 1 fetches only the seed itself
     public void crawl(String url, int depth) {
-        if (depth == 0 || visited.contains(url)) return;
+        if (depth <= 0 || !visited.add(url)) return;
+
+        long start = System.nanoTime();
+        int crawledBefore = pagesCrawled.get();
+        BlockingQueue<CrawlTask> frontier = new LinkedBlockingQueue<>();
+        AtomicInteger pending = new AtomicInteger(1);  // queued + in-flight tasks
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        frontier.add(new CrawlTask(url, depth));
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (pending.get() > 0) {
+                CrawlTask task = frontier.poll(50, TimeUnit.MILLISECONDS);
+                if (task == null) continue;
+
+                inFlight.acquire();
+                pool.submit(() -> {
+                    try {
+                        fetch(task, frontier, pending);
+                    } finally {
+                        inFlight.release();
+                        pending.decrementAndGet();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int crawled = pagesCrawled.get() - crawledBefore;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("✅ Crawled %d pages in %.1fs (%.1f pages/sec)%n",
+                crawled, seconds, crawled / Math.max(seconds, 1e-9));
+    }
+
+    private void fetch(CrawlTask task, BlockingQueue<CrawlTask> frontier, AtomicInteger pending) {
+        String url = task.url();
+        String host = hostOf(url);
+        if (host == null) return;
 
         try {
-            visited.add(url);
-            Document doc = Jsoup.connect(url).userAgent("Mozilla").get();
+            long waitStart = System.nanoTime();
+            throttle.acquire(host);
+            THROTTLE_TIME.recordSince(waitStart);
+            Connection.Response response;
+            long fetchStart = System.nanoTime();
+            try {
+                response = Jsoup.connect(url).userAgent("Mozilla").timeout(FETCH_TIMEOUT_MS).execute();
+                BYTES.add(response.bodyAsBytes().length);  // reads the whole body
+            } finally {
+                throttle.release(host);
+                FETCH_TIME.recordSince(fetchStart);
+            }
+            long parseStart = System.nanoTime();
+            Document doc = response.parse();
 
             // 1. Page title
             String title = doc.title();
 
             // 2. Full visible text (no scripts, ads, etc.)
-            String text = doc.body().text();
+            String text = doc.body() != null ? doc.body().text() : "";
 
             // 3. All absolute links on the page
-            Set<String> linksSet = new HashSet<>();
+            Set<String> linksSet = new LinkedHashSet<>();
             Elements anchorTags = doc.select("a[href]");
             for (Element a : anchorTags) {
                 String link = a.absUrl("href");
-                if (link.startsWith("http") && !visited.contains(link)) {
+                if (link.startsWith("http")) {
                     linksSet.add(link);
                 }
             }
 
             List<String> linksList = new ArrayList<>(linksSet);
+            PARSE_TIME.recordSince(parseStart);
 
             // ✅ Save page to database (including links)
-            DBManager.savePage(url, title, text, linksList);
-
-            // Output basic info
-            System.out.println("📄 Title: " + title);
-            System.out.println("🔗 Links found: " + linksList.size());
-            System.out.println("📝 Text snippet: " + text.substring(0, Math.min(300, text.length())) + "...");
-            System.out.println("------------------------------------------------");
+            sink.accept(url, title, text, linksList);
+            pagesCrawled.incrementAndGet();
+            PAGES.increment();
+            System.out.println("📄 " + title + " (" + linksList.size() + " links) " + url);
 
-            // Recursive crawl
-            for (String link : linksList) {
-                crawl(link, depth - 1);
+            // 4. Enqueue unseen links one level deeper
+            if (task.depth() > 1) {
+                for (String link : linksList) {
+                    synchronized (visited) {  // so concurrent fetches can't overshoot maxPages
+                        if (visited.size() >= maxPages) break;
+                        if (!visited.add(link)) continue;
+                    }
+                    pending.incrementAndGet();
+                    frontier.add(new CrawlTask(link, task.depth() - 1));
+                }
             }
-
         } catch (IOException e) {
+            FAILURES.increment();
             System.out.println("⚠️ Failed to crawl: " + url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return new URI(url).getHost();
+        } catch (Exception e) {
+            return null;
         }
     }
 }
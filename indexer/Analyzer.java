@@ -0,0 +1,158 @@
+package indexer;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Turns text into index terms. One pass over the chars: letters and digits form
+// tokens (any script), which are lowercased and stripped of accents into a reusable
+// buffer, then optionally dropped as stopwords and/or reduced by an S-stemmer.
+// Indexing and querying must use the same chain; its name() is stored with the index.
+public final class Analyzer {
+    // Receives each token; `term` is only valid during the call
+    public interface TokenConsumer {
+        void accept(char[] term, int length, int position, int start, int end);
+    }
+
+    static final String[] ENGLISH_STOPWORDS = {
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+        "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these",
+        "they", "this", "to", "was", "will", "with"
+    };
+    private static final int MAX_TOKEN_LENGTH = 64;  // longer runs are truncated
+    private static final char[] FOLD = buildFoldTable();
+
+    private final char[][] stopwords;  // open-addressing set, null slots empty
+    private final boolean stemming;
+    private final String name;
+    private final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[MAX_TOKEN_LENGTH]);
+
+    private Analyzer(String[] stopwordList, boolean stemming) {
+        this.stemming = stemming;
+        this.stopwords = stopwordList.length == 0 ? null : buildSet(stopwordList);
+        this.name = "standard" + (stopwords != null ? "+stop" : "") + (stemming ? "+stem" : "");
+    }
+
+    // Folding only: every token is kept as written (lowercased, unaccented)
+    public static Analyzer standard() {
+        return new Analyzer(new String[0], false);
+    }
+
+    public static Analyzer of(boolean englishStopwords, boolean stemming) {
+        return new Analyzer(englishStopwords ? ENGLISH_STOPWORDS : new String[0], stemming);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void analyze(CharSequence text, TokenConsumer out) {
+        char[] term = buffers.get();
+        int length = 0;
+        int start = -1;
+        int position = 0;
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) start = i;
+                if (length < MAX_TOKEN_LENGTH) term[length++] = fold(c);
+            } else if (start >= 0) {
+                if (emit(term, length, position, start, i, out)) position++;
+                length = 0;
+                start = -1;
+            }
+        }
+    }
+
+    // Convenience for short strings such as queries
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, (term, length, position, start, end) -> terms.add(new String(term, 0, length)));
+        return terms;
+    }
+
+    // Lowercases and strips accents the way tokens are folded, without splitting,
+    // stopwords or stemming: for matching a partly typed word against index terms
+    public static String fold(CharSequence text) {
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) folded[i] = fold(text.charAt(i));
+        return new String(folded);
+    }
+
+    private boolean emit(char[] term, int length, int position, int start, int end, TokenConsumer out) {
+        if (stopwords != null && containsStopword(term, length)) return false;
+        if (stemming) length = stem(term, length);
+        out.accept(term, length, position, start, end);
+        return true;
+    }
+
+    private static char fold(char c) {
+        if (c < FOLD.length) return FOLD[c];
+        return Character.toLowerCase(c);
+    }
+
+    // Lowercase plus accent stripping for Latin-1 and Latin Extended-A/B (é -> e, Ł -> l)
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x250];
+        for (char c = 0; c < table.length; c++) {
+            char lower = Character.toLowerCase(c);
+            String decomposed = Normalizer.normalize(String.valueOf(lower), Normalizer.Form.NFD);
+            char base = decomposed.charAt(0);
+            table[c] = Character.isLetterOrDigit(base) ? base : lower;
+        }
+        table['ł'] = 'l';
+        table['Ł'] = 'l';
+        table['ø'] = 'o';
+        table['Ø'] = 'o';
+        table['đ'] = 'd';
+        table['Đ'] = 'd';
+        return table;
+    }
+
+    // Harman's S-stemmer: strips English plurals only, so it rarely conflates unrelated words
+    private static int stem(char[] term, int length) {
+        if (length < 3 || term[length - 1] != 's') return length;
+        char prev = term[length - 2];
+        if (length > 3 && prev == 'e' && term[length - 3] == 'i'
+                && term[length - 4] != 'e' && term[length - 4] != 'a') {
+            term[length - 3] = 'y';  // ies -> y
+            return length - 2;
+        }
+        if (prev == 'e' && length > 3) {
+            char before = term[length - 3];
+            if (before != 'a' && before != 'e' && before != 'o') return length - 1;  // es -> e
+            return length;
+        }
+        if (prev != 'u' && prev != 's') return length - 1;  // s -> ""
+        return length;
+    }
+
+    private static char[][] buildSet(String[] words) {
+        char[][] set = new char[Integer.highestOneBit(words.length * 4) << 1][];
+        for (String word : words) {
+            char[] chars = word.toCharArray();
+            int slot = hash(chars, chars.length) & (set.length - 1);
+            while (set[slot] != null) slot = (slot + 1) & (set.length - 1);
+            set[slot] = chars;
+        }
+        return set;
+    }
+
+    private boolean containsStopword(char[] term, int length) {
+        int slot = hash(term, length) & (stopwords.length - 1);
+        while (stopwords[slot] != null) {
+            char[] candidate = stopwords[slot];
+            if (candidate.length == length && Arrays.equals(candidate, 0, length, term, 0, length)) return true;
+            slot = (slot + 1) & (stopwords.length - 1);
+        }
+        return false;
+    }
+
+    private static int hash(char[] chars, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) h = 31 * h + chars[i];
+        return h ^ (h >>> 16);
+    }
+}
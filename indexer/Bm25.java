@@ -0,0 +1,117 @@
+package indexer;
+
+// BM25 ranking. A term contributes
+//     idf * boost * tf * (k1 + 1) / (tf + k1 * (1 - b + b * length / avgLength))
+// where length is the token count of the field (body or title) in that doc.
+// Lengths are stored per doc as one byte (exact below 24, then 4 significant
+// bits), so the length part of the denominator is a 256-entry table per field,
+// built per search from the snapshot's average lengths.
+public final class Bm25 {
+    public static final float DEFAULT_K1 = 1.2f;
+    public static final float DEFAULT_B = 0.75f;
+    public static final float DEFAULT_TITLE_BOOST = 2.0f;
+
+    private static final int EXACT_LENGTHS = 24;  // 255 - encodeBits(Integer.MAX_VALUE)
+    private static final int[] DECODED = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) DECODED[i] = decode(i);
+    }
+
+    private final float k1;
+    private final float b;
+    private final float titleBoost;
+
+    // k1: how fast repeated terms saturate; b: 0 ignores length, 1 normalizes fully
+    public Bm25(float k1, float b, float titleBoost) {
+        if (k1 < 0 || b < 0 || b > 1 || titleBoost < 0) {
+            throw new IllegalArgumentException("Invalid BM25 parameters: k1=" + k1 + ", b=" + b
+                    + ", titleBoost=" + titleBoost);
+        }
+        this.k1 = k1;
+        this.b = b;
+        this.titleBoost = titleBoost;
+    }
+
+    public static Bm25 standard() {
+        return new Bm25(DEFAULT_K1, DEFAULT_B, DEFAULT_TITLE_BOOST);
+    }
+
+    public float titleBoost() {
+        return titleBoost;
+    }
+
+    // Never negative, unlike the classic Robertson-Sparck Jones form
+    public double idf(int df, int docs) {
+        if (df == 0) return 0.0;
+        int n = Math.max(docs, df);
+        return Math.log(1 + (n - df + 0.5) / (df + 0.5));
+    }
+
+    // Length tables for a snapshot's average field lengths (deleted docs count until
+    // merged away, as they do for document frequencies)
+    Scoring scoring(IndexSnapshot snap) {
+        long docs = 0, length = 0, titleLength = 0;
+        for (Segment segment : snap.segments()) {
+            docs += segment.docCount();
+            length += segment.totalLength();
+            titleLength += segment.totalTitleLength();
+        }
+        double avgLength = docs == 0 ? 0 : (double) length / docs;
+        double avgTitleLength = docs == 0 ? 0 : (double) titleLength / docs;
+        return new Scoring(k1, lengthTable(avgLength), lengthTable(avgTitleLength));
+    }
+
+    // Index with a doc's (unsigned) norm byte
+    private float[] lengthTable(double avgLength) {
+        float[] table = new float[256];
+        for (int i = 0; i < 256; i++) {
+            table[i] = (float) (k1 * (1 - b + (avgLength > 0 ? b * DECODED[i] / avgLength : 0)));
+        }
+        return table;
+    }
+
+    static final class Scoring {
+        private final float k1;
+        private final float[] body;
+        private final float[] title;
+
+        private Scoring(float k1, float[] body, float[] title) {
+            this.k1 = k1;
+            this.body = body;
+            this.title = title;
+        }
+
+        // weight = idf * boost * query term count
+        TermScorer scorer(Segment segment, Segment.TermInfo info, float weight) {
+            boolean titleField = Segment.isTitleTerm(info.term());
+            return new TermScorer(segment, segment.postings(info), titleField, titleField ? title : body,
+                    weight * (k1 + 1));
+        }
+    }
+
+    // Monotonic one-byte length: 0..23 exact, then 3 mantissa bits and an exponent
+    static byte encodeLength(int length) {
+        if (length < EXACT_LENGTHS) return (byte) Math.max(0, length);
+        return (byte) (EXACT_LENGTHS + encodeBits(length - EXACT_LENGTHS));
+    }
+
+    static int decodeLength(byte norm) {
+        return DECODED[norm & 0xFF];
+    }
+
+    private static int decode(int norm) {
+        if (norm < EXACT_LENGTHS) return norm;
+        int bits = norm - EXACT_LENGTHS;
+        int mantissa = bits & 0x07;
+        int shift = (bits >>> 3) - 1;
+        return EXACT_LENGTHS + (shift < 0 ? mantissa : (mantissa | 0x08) << shift);
+    }
+
+    private static int encodeBits(int value) {
+        int bits = 32 - Integer.numberOfLeadingZeros(value);
+        if (bits < 4) return value;
+        int shift = bits - 4;
+        return ((value >>> shift) & 0x07) | ((shift + 1) << 3);
+    }
+}
@@ -0,0 +1,134 @@
+package indexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+// Top-k search for conjunctive queries: an AND of groups, each group an OR of terms,
+// minus excluded terms. Per segment the groups are ordered by cost (postings count)
+// and the cheapest leads: every other group is only advanced (galloping over skip
+// data) to the lead's docs, and on a miss the lead leapfrogs to where that group
+// landed. A rare term therefore limits the work for the whole query, instead of
+// decoding the union of every term's postings.
+final class BooleanSearcher {
+    private BooleanSearcher() {}
+
+    // One group's matches: a single term, or the union of several
+    private static final class Group {
+        final TermScorer[] scorers;
+        final PostingsIterator[] postings;
+        final long cost;
+        int doc = -1;
+
+        Group(TermScorer[] scorers) {
+            this.scorers = scorers;
+            this.postings = new PostingsIterator[scorers.length];
+            for (int i = 0; i < scorers.length; i++) postings[i] = scorers[i].postings;
+            long df = 0;
+            for (PostingsIterator it : postings) df += it.termInfo().df();
+            this.cost = df;
+        }
+
+        int nextDoc() {
+            for (PostingsIterator it : postings) {
+                if (it.docId() <= doc) it.nextDoc();
+            }
+            return doc = minDoc();
+        }
+
+        int advance(int target) {
+            if (doc >= target) return doc;
+            for (PostingsIterator it : postings) it.advance(target);
+            return doc = minDoc();
+        }
+
+        float score() {
+            float score = 0;
+            for (int i = 0; i < postings.length; i++) {
+                if (postings[i].docId() == doc) score += scorers[i].score();
+            }
+            return score;
+        }
+
+        private int minDoc() {
+            int min = PostingsIterator.NO_MORE_DOCS;
+            for (PostingsIterator it : postings) min = Math.min(min, it.docId());
+            return min;
+        }
+    }
+
+    // groups[g] are alternatives, scored with BM25 times weights.get(term); each doc then gets
+    // its PageRank boost * boostWeight. allowed and rejected (either may be null) restrict the
+    // docs that can be returned, e.g. to filter matches or to drop excluded phrases.
+    static TopDocs search(IndexSnapshot snap, Bm25.Scoring scoring, List<String[]> groups,
+                          List<String> excluded, Map<String, Float> weights, BitSet allowed,
+                          BitSet rejected, float boostWeight, int k) {
+        TopDocs top = new TopDocs(k);
+        if (groups.isEmpty()) return top;  // a purely negative query matches nothing
+        DocMetadata metadata = snap.metadata();
+
+        for (Segment segment : snap.segments()) {
+            // 1. A group with no postings here means no doc in this segment can match
+            Group[] clauses = new Group[groups.size()];
+            boolean possible = true;
+            for (int g = 0; g < clauses.length && possible; g++) {
+                clauses[g] = group(scoring, segment, groups.get(g), weights);
+                possible = clauses[g] != null;
+            }
+            if (!possible) continue;
+            Arrays.sort(clauses, (a, b) -> Long.compare(a.cost, b.cost));
+            List<PostingsIterator> exclusions = new ArrayList<>();
+            for (String term : excluded) {
+                Segment.TermInfo info = segment.lookup(term);
+                if (info != null) exclusions.add(segment.postings(info));
+            }
+
+            // 2. Leapfrog intersection led by the cheapest group
+            Group lead = clauses[0];
+            int doc = lead.nextDoc();
+            while (doc != PostingsIterator.NO_MORE_DOCS) {
+                if (allowed != null && !allowed.get(doc)) {
+                    int next = allowed.nextSetBit(doc);
+                    if (next < 0) break;
+                    doc = lead.advance(next);
+                    continue;
+                }
+                int next = doc;
+                for (int g = 1; g < clauses.length && next == doc; g++) next = clauses[g].advance(doc);
+                if (next != doc) {
+                    doc = lead.advance(next);
+                    continue;
+                }
+
+                // 3. Every group matches: drop deleted and excluded docs, then score
+                boolean dropped = snap.isDeleted(doc) || (rejected != null && rejected.get(doc));
+                if (!dropped && !excludedMatch(exclusions, doc)) {
+                    float score = 0;
+                    for (Group clause : clauses) score += clause.score();
+                    top.insert(doc, score + metadata.pageRankBoost(doc) * boostWeight);
+                }
+                doc = lead.nextDoc();
+            }
+        }
+        return top;
+    }
+
+    private static Group group(Bm25.Scoring scoring, Segment segment, String[] terms,
+                               Map<String, Float> weights) {
+        List<TermScorer> scorers = new ArrayList<>();
+        for (String term : terms) {
+            Segment.TermInfo info = segment.lookup(term);
+            if (info != null) scorers.add(scoring.scorer(segment, info, weights.getOrDefault(term, 0f)));
+        }
+        return scorers.isEmpty() ? null : new Group(scorers.toArray(new TermScorer[0]));
+    }
+
+    private static boolean excludedMatch(List<PostingsIterator> exclusions, int doc) {
+        for (PostingsIterator it : exclusions) {
+            if (it.advance(doc) == doc) return true;
+        }
+        return false;
+    }
+}
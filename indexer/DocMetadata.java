@@ -0,0 +1,206 @@
+package indexer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import utils.Database;
+
+// Per-document columns needed at query time (domain, crawl time, PageRank boost,
+// title length), held in arrays indexed by doc id and loaded with one scan of pages.
+// Filters are precomputed into bitsets, so checking a posting is a bit test
+// instead of a database query. Never mutated once built; a refresh returns a copy.
+public final class DocMetadata {
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+    // Filter values come from queries (e.g. over HTTP) and each bitset spans every doc
+    // id, so only the most recently used ones are kept
+    static final int MAX_CACHED_FILTERS = 32;
+    // pages.pagerank is rank * page count (1.0 on average, thousands for hubs), so it
+    // is damped to log(1 + pagerank) and capped: a hub ranks above an average page but
+    // cannot outweigh the text match, and the cap keeps MaxScore's bound tight
+    static final float MAX_PAGERANK_BOOST = 3f;
+
+    private final int[] domainIds;      // -1 when the page has no domain
+    private final long[] crawledAt;     // epoch seconds, UNKNOWN_TIME when missing
+    private final float[] pageRankBoosts;
+    private final int[] titleLengths;
+    private final List<String> domains;  // domain id -> name
+    private final BitSet present;
+    private final float maxPageRankBoost;
+    private final Map<String, BitSet> filterCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BitSet> eldest) {
+            return size() > MAX_CACHED_FILTERS;
+        }
+    };
+
+    private DocMetadata(int[] domainIds, long[] crawledAt, float[] pageRankBoosts, int[] titleLengths,
+                        List<String> domains, BitSet present) {
+        this.domainIds = domainIds;
+        this.crawledAt = crawledAt;
+        this.pageRankBoosts = pageRankBoosts;
+        this.titleLengths = titleLengths;
+        this.domains = domains;
+        this.present = present;
+        float max = 0f;
+        for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+            max = Math.max(max, pageRankBoosts[id]);
+        }
+        this.maxPageRankBoost = max;
+    }
+
+    static DocMetadata empty() {
+        return new DocMetadata(new int[0], new long[0], new float[0], new int[0], List.of(), new BitSet());
+    }
+
+    static DocMetadata load() throws SQLException {
+        return empty().withDocsAfter(0);
+    }
+
+    // Copy with the rows of pages whose id is greater than afterId added (or refreshed)
+    DocMetadata withDocsAfter(int afterId) throws SQLException {
+        return Database.read(db -> {
+            int maxId;
+            try (ResultSet rs = db.prepare("SELECT MAX(id) FROM pages").executeQuery()) {
+                maxId = rs.next() ? rs.getInt(1) : 0;
+            }
+            int size = Math.max(domainIds.length, maxId + 1);
+            int[] newDomainIds = Arrays.copyOf(domainIds, size);
+            long[] newCrawledAt = Arrays.copyOf(crawledAt, size);
+            float[] newPageRankBoosts = Arrays.copyOf(pageRankBoosts, size);
+            int[] newTitleLengths = Arrays.copyOf(titleLengths, size);
+            List<String> newDomains = new ArrayList<>(domains);
+            BitSet newPresent = (BitSet) present.clone();
+
+            Map<String, Integer> domainIndex = new HashMap<>();
+            for (int i = 0; i < newDomains.size(); i++) domainIndex.put(newDomains.get(i), i);
+
+            PreparedStatement ps = db.prepare(
+                "SELECT id, domain, CAST(strftime('%s', crawled_at) AS INTEGER), pagerank, length(title) "
+              + "FROM pages WHERE id > ?"
+            );
+            ps.setInt(1, afterId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (id >= size) continue;  // inserted after MAX(id) was read; picked up next refresh
+                    String domain = rs.getString(2);
+                    if (domain == null) {
+                        newDomainIds[id] = -1;
+                    } else {
+                        newDomainIds[id] = domainIndex.computeIfAbsent(domain, d -> {
+                            newDomains.add(d);
+                            return newDomains.size() - 1;
+                        });
+                    }
+                    long time = rs.getLong(3);
+                    newCrawledAt[id] = rs.wasNull() ? UNKNOWN_TIME : time;
+                    newPageRankBoosts[id] = pageRankBoost(rs.getFloat(4));
+                    newTitleLengths[id] = rs.getInt(5);
+                    newPresent.set(id);
+                }
+            }
+            return new DocMetadata(newDomainIds, newCrawledAt, newPageRankBoosts, newTitleLengths,
+                    List.copyOf(newDomains), newPresent);
+        });
+    }
+
+    static float pageRankBoost(float pageRank) {
+        return Math.min(MAX_PAGERANK_BOOST, (float) Math.log1p(Math.max(0f, pageRank)));
+    }
+
+    // Normalized PageRank of a doc, between 0 and MAX_PAGERANK_BOOST
+    public float pageRankBoost(int docId) {
+        return docId < pageRankBoosts.length ? pageRankBoosts[docId] : 0f;
+    }
+
+    // Upper bound for the PageRank boost, used when pruning
+    public float maxPageRankBoost() {
+        return maxPageRankBoost;
+    }
+
+    public int titleLength(int docId) {
+        return docId < titleLengths.length ? titleLengths[docId] : 0;
+    }
+
+    public String domain(int docId) {
+        if (docId >= domainIds.length || !present.get(docId) || domainIds[docId] < 0) return null;
+        return domains.get(domainIds[docId]);
+    }
+
+    public long crawledAt(int docId) {
+        return docId < crawledAt.length && present.get(docId) ? crawledAt[docId] : UNKNOWN_TIME;
+    }
+
+    // Docs allowed by both filters, or null when there is nothing to filter.
+    // domainFilter matches as a substring of the domain; afterDate is any date
+    // or datetime SQLite understands, and docs crawled before it are excluded.
+    public BitSet filter(String domainFilter, String afterDate) {
+        if (domainFilter == null && afterDate == null) return null;
+        BitSet allowed = (BitSet) present.clone();
+        if (domainFilter != null) allowed.and(domainBits(domainFilter));
+        if (afterDate != null) allowed.and(afterBits(afterDate));
+        return allowed;
+    }
+
+    private BitSet domainBits(String domainFilter) {
+        return cachedFilter("site:" + domainFilter, () -> {
+            // Match against the (small) domain dictionary once, then map ids to docs
+            boolean[] matches = new boolean[domains.size()];
+            for (int i = 0; i < matches.length; i++) matches[i] = domains.get(i).contains(domainFilter);
+            BitSet bits = new BitSet(domainIds.length);
+            for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+                if (domainIds[id] >= 0 && matches[domainIds[id]]) bits.set(id);
+            }
+            return bits;
+        });
+    }
+
+    private BitSet afterBits(String afterDate) {
+        return cachedFilter("after:" + afterDate, () -> {
+            BitSet bits = new BitSet(crawledAt.length);
+            long threshold = toEpochSeconds(afterDate);
+            if (threshold == UNKNOWN_TIME) return bits;  // unparseable date matches nothing
+            for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+                if (crawledAt[id] != UNKNOWN_TIME && crawledAt[id] >= threshold) bits.set(id);
+            }
+            return bits;
+        });
+    }
+
+    // The bitset is computed outside the lock; concurrent misses on one key may both compute it
+    private BitSet cachedFilter(String key, Supplier<BitSet> compute) {
+        synchronized (filterCache) {
+            BitSet cached = filterCache.get(key);
+            if (cached != null) return cached;
+        }
+        BitSet bits = compute.get();
+        synchronized (filterCache) {
+            return filterCache.computeIfAbsent(key, k -> bits);
+        }
+    }
+
+    // Parsed the same way as the crawled_at column so the two always compare consistently
+    private static long toEpochSeconds(String date) {
+        try {
+            return Database.read(db -> {
+                PreparedStatement ps = db.prepare("SELECT CAST(strftime('%s', ?) AS INTEGER)");
+                ps.setString(1, date);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return UNKNOWN_TIME;
+                    long value = rs.getLong(1);
+                    return rs.wasNull() ? UNKNOWN_TIME : value;
+                }
+            });
+        } catch (SQLException e) {
+            return UNKNOWN_TIME;
+        }
+    }
+}
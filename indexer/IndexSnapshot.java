@@ -0,0 +1,81 @@
+package indexer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+
+// The set of segments a search runs against, the doc ids deleted since they were
+// written, and the per-document metadata used for filtering and boosting. Never
+// mutated after construction; Indexer swaps in a new one when an update or merge
+// is published, so searches in flight keep a consistent view.
+// Segments are grouped by the shard they belong to; shards() gives one view per
+// shard (sharing the deletions and metadata) for scatter-gather search, while
+// docFreq and liveDocs stay global so every shard scores with the same statistics.
+public record IndexSnapshot(long generation, List<Segment> segments, BitSet deleted, int liveDocs,
+                            DocMetadata metadata, List<IndexSnapshot> shards) {
+
+    static IndexSnapshot of(long generation, List<Segment> segments, BitSet deleted, DocMetadata metadata) {
+        TreeMap<Integer, List<Segment>> byShard = new TreeMap<>();
+        for (Segment segment : segments) {
+            byShard.computeIfAbsent(IndexStore.shardOf(segment.path()), s -> new ArrayList<>()).add(segment);
+        }
+        List<IndexSnapshot> shards = new ArrayList<>();
+        if (byShard.size() > 1) {
+            for (List<Segment> shardSegments : byShard.values()) {
+                shards.add(of(generation, shardSegments, deleted, metadata));
+            }
+        }
+        return new IndexSnapshot(generation, List.copyOf(segments), deleted, liveDocs(segments, deleted), metadata,
+                List.copyOf(shards));
+    }
+
+    private static int liveDocs(List<Segment> segments, BitSet deleted) {
+        int docs = 0;
+        for (Segment segment : segments) docs += segment.docCount();
+        int deletedCount = 0;
+        for (int id = deleted.nextSetBit(0); id >= 0; id = deleted.nextSetBit(id + 1)) {
+            for (Segment segment : segments) {
+                if (segment.contains(id)) {
+                    deletedCount++;
+                    break;
+                }
+            }
+        }
+        return Math.max(0, docs - deletedCount);
+    }
+
+    IndexSnapshot withMetadata(DocMetadata newMetadata) {
+        List<IndexSnapshot> newShards = new ArrayList<>(shards.size());
+        for (IndexSnapshot shard : shards) newShards.add(shard.withMetadata(newMetadata));
+        return new IndexSnapshot(generation, segments, deleted, liveDocs, newMetadata, List.copyOf(newShards));
+    }
+
+    // One view per shard; just this snapshot when the index isn't sharded
+    public List<IndexSnapshot> shards() {
+        return shards.isEmpty() ? List.of(this) : shards;
+    }
+
+    public boolean isDeleted(int docId) {
+        return deleted.get(docId);
+    }
+
+    // Global document frequency over all segments (deleted docs count until merged away)
+    public int docFreq(String term) {
+        int df = 0;
+        for (Segment segment : segments) {
+            Segment.TermInfo info = segment.lookup(term);
+            if (info != null) df += info.df();
+        }
+        return df;
+    }
+
+    public String url(int docId) {
+        if (isDeleted(docId)) return null;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            String url = segments.get(i).url(docId);
+            if (url != null) return url;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+package indexer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import utils.Database;
+
+// Where the persisted index lives: segment files in a directory next to the
+// database, plus the index_meta rows that say which segments are current and
+// the index_tombstones rows for documents deleted since they were indexed.
+// A sharded index keeps each shard's segments in its own subdirectory
+// (shard-0/, shard-1/, ...); segment names are relative to the index directory.
+final class IndexStore {
+    private static final String SHARD_PREFIX = "shard-";
+
+    private IndexStore() {}
+
+    static Path directory() {
+        return Path.of(Database.path() + ".index");
+    }
+
+    static String segmentName(long generation) {
+        return "segment-" + generation + ".seg";
+    }
+
+    // A shard's segment for a generation; unsharded indexes keep the flat layout
+    static String segmentName(long generation, int shard, int shards) {
+        return shards == 1 ? segmentName(generation) : SHARD_PREFIX + shard + "/" + segmentName(generation);
+    }
+
+    // Name of a segment file as index_meta lists it
+    static String nameOf(Path segment) {
+        Path parent = segment.getParent();
+        String file = segment.getFileName().toString();
+        if (parent == null || !parent.getFileName().toString().startsWith(SHARD_PREFIX)) return file;
+        return parent.getFileName() + "/" + file;
+    }
+
+    // Shard that a segment file belongs to (0 for the flat layout)
+    static int shardOf(Path segment) {
+        Path parent = segment.getParent();
+        String dir = parent == null ? "" : parent.getFileName().toString();
+        return dir.startsWith(SHARD_PREFIX) ? Integer.parseInt(dir.substring(SHARD_PREFIX.length())) : 0;
+    }
+
+    // Shard that holds a doc. Ids are mixed first, so shards stay balanced whatever
+    // ids deletions and re-crawls leave behind.
+    static int shardOf(int docId, int shards) {
+        int h = docId * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shards);
+    }
+
+    static int shardCount(Map<String, String> meta) {
+        return Integer.parseInt(meta.getOrDefault("shards", "1"));
+    }
+
+    // Autocomplete vocabulary saved for an index generation
+    static String autocompleteName(long generation) {
+        return "autocomplete-" + generation + ".bin";
+    }
+
+    static Map<String, String> readMeta() throws SQLException {
+        return Database.read(db -> {
+            Map<String, String> meta = new HashMap<>();
+            try (ResultSet rs = db.prepare("SELECT key, value FROM index_meta").executeQuery()) {
+                while (rs.next()) {
+                    meta.put(rs.getString("key"), rs.getString("value"));
+                }
+            }
+            return meta;
+        });
+    }
+
+    // Cheap fingerprint of the pages table; any crawl changes at least one part of it
+    static String pagesSignature() throws SQLException {
+        return Database.read(db -> {
+            try (ResultSet rs = db.prepare(
+                    "SELECT COUNT(*), MAX(id), MAX(crawled_at) FROM pages").executeQuery()) {
+                rs.next();
+                return rs.getLong(1) + "|" + rs.getLong(2) + "|" + rs.getString(3);
+            }
+        });
+    }
+
+    static long nextGeneration() throws SQLException {
+        String current = readMeta().get("generation");
+        return current == null ? 1 : Long.parseLong(current) + 1;
+    }
+
+    // Current segments, oldest first
+    static List<String> segmentNames(Map<String, String> meta) {
+        List<String> names = new ArrayList<>();
+        String value = meta.getOrDefault("segments", meta.get("segment"));
+        if (value != null) {
+            for (String name : value.split(",")) {
+                if (!name.isBlank()) names.add(name);
+            }
+        }
+        return names;
+    }
+
+    static BitSet loadTombstones() throws SQLException {
+        return Database.read(db -> {
+            BitSet deleted = new BitSet();
+            try (ResultSet rs = db.prepare("SELECT doc_id FROM index_tombstones").executeQuery()) {
+                while (rs.next()) {
+                    deleted.set(rs.getInt(1));
+                }
+            }
+            return deleted;
+        });
+    }
+
+    // Publish a new generation with the given segment list; `extra` runs in the
+    // same transaction (e.g. snippet rows, tombstone cleanup)
+    static void commit(long generation, String signature, List<String> segments, int maxDocId, int shards,
+                       String analyzer, Database.SqlWork<?> extra) throws SQLException {
+        Database.transaction(db -> {
+            if (extra != null) extra.run(db);
+            PreparedStatement metaStmt = db.prepare(
+                "INSERT OR REPLACE INTO index_meta (key, value) VALUES (?, ?)"
+            );
+            String[][] rows = {
+                {"generation", Long.toString(generation)},
+                {"pages_signature", signature},
+                {"segments", String.join(",", segments)},
+                {"max_doc_id", Integer.toString(maxDocId)},
+                {"shards", Integer.toString(shards)},
+                {"analyzer", analyzer},
+            };
+            for (String[] row : rows) {
+                metaStmt.setString(1, row[0]);
+                metaStmt.setString(2, row[1]);
+                metaStmt.addBatch();
+            }
+            metaStmt.executeBatch();
+            db.execute("DELETE FROM index_meta WHERE key = 'segment'");  // pre-incremental key
+            return null;
+        });
+    }
+
+    // Remove segment files that are no longer referenced by index_meta, and shard
+    // directories left empty (e.g. after a rebuild with fewer shards)
+    static void deleteSegmentsExcept(Collection<String> keep) {
+        Path dir = directory();
+        deleteExcept(dir, "segment-*.seg", keep);
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(dir, SHARD_PREFIX + "*")) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) continue;
+                deleteExcept(shard, "segment-*.seg", keep);
+                try (DirectoryStream<Path> left = Files.newDirectoryStream(shard)) {
+                    if (!left.iterator().hasNext()) Files.deleteIfExists(shard);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ Could not clean up old index files: " + e.getMessage());
+        }
+    }
+
+    static void deleteAutocompleteExcept(String keep) {
+        deleteExcept(directory(), "autocomplete-*.bin", List.of(keep));
+    }
+
+    private static void deleteExcept(Path dir, String glob, Collection<String> keep) {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, glob)) {
+            for (Path file : files) {
+                if (!keep.contains(nameOf(file))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ Could not clean up old index files: " + e.getMessage());
+        }
+    }
+}
@@ -1,250 +1,1060 @@
 package indexer;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 import autocomplete.AutocompleteTrie;
 import utils.DBManager;
-import utils.DBReader;
+import utils.Database;
+import utils.LatencyHistogram;
+import utils.Metrics;
+import utils.UserProfile;
+import utils.UserProfiles;
 
-public class Indexer {
-    private static final String DB_URL = "jdbc:sqlite:searchengine.db";
+public class Indexer implements AutoCloseable {
+    // Merge policy: keep at most this many segments, and rewrite any segment
+    // whose share of deleted documents grows past the ratio
+    private static final int MAX_SEGMENTS = 8;
+    private static final int MERGE_FACTOR = 4;
+    private static final double MAX_DELETED_RATIO = 0.2;
+    private static final float PAGERANK_WEIGHT = 0.2f;  // optional scaling
+    private static final float PERSONALIZATION_WEIGHT = 0.5f;  // for the user's strongest profile term
+    private static final float PROXIMITY_WEIGHT = 0.5f;  // for query terms that appear side by side
+    private static final int SNIPPET_LENGTH = 160;
+    private static final ThreadLocal<TermCounter> TERM_COUNTERS = ThreadLocal.withInitial(TermCounter::new);
+    private static final ThreadLocal<TermCounter> TITLE_COUNTERS = ThreadLocal.withInitial(TermCounter::new);
+    private static final int MAX_CACHED_RESULTS = 1000;  // larger (e.g. unbounded) result lists aren't cached
+    private static final int QUERY_LOG_WEIGHT = 10;  // autocomplete weight of one search, in docs
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    // Shards for new builds; an existing index keeps the count it was built with
+    public static final int DEFAULT_SHARDS = Integer.getInteger("searchengine.shards", Math.min(8, CORES));
+    // Result cache: entries kept, and how long one lives (0 = until evicted or the index changes)
+    public static final int DEFAULT_QUERY_CACHE_SIZE = Integer.getInteger("searchengine.cache.size", 1000);
+    public static final long DEFAULT_QUERY_CACHE_TTL_MS = Long.getLong("searchengine.cache.ttl_ms", 0);
 
-    private Map<String, Map<String, Double>> index = new HashMap<>();
-    private Map<String, String> urlToSnippet = new HashMap<>();
-    private AutocompleteTrie trie = new AutocompleteTrie();
+    // Per-stage timings (see Metrics). The PageRank boost is timed with ranking: it is
+    // part of each candidate's score, so pruning can account for it. Filter, rank and
+    // proximity run once per shard, so on a sharded index they are recorded per shard.
+    private static final LongAdder QUERIES = Metrics.counter("search.queries");
+    private static final LongAdder CACHE_HITS = Metrics.counter("search.cache_hits");
+    private static final LatencyHistogram SEARCH_TIME = Metrics.histogram("search.total");
+    private static final LatencyHistogram TERMS_TIME = Metrics.histogram("search.terms");
+    private static final LatencyHistogram FILTER_TIME = Metrics.histogram("search.filter");
+    private static final LatencyHistogram RANK_TIME = Metrics.histogram("search.rank");
+    private static final LatencyHistogram PROXIMITY_TIME = Metrics.histogram("search.proximity");
+    private static final LatencyHistogram PERSONALIZE_TIME = Metrics.histogram("search.personalize");
+    private static final LatencyHistogram RESULTS_TIME = Metrics.histogram("search.results");
+    private static final LatencyHistogram SNIPPET_TIME = Metrics.histogram("search.snippet");
+    private static final LongAdder INDEXED_DOCS = Metrics.counter("index.docs");
+    private static final LongAdder POSTINGS_WRITTEN = Metrics.counter("index.postings");
+    private static final LatencyHistogram SEGMENT_TIME = Metrics.histogram("index.segment");
 
-    public void buildIndex() {
-        Map<String, String> docs = loadDocuments();
-        Map<String, String> pages = DBReader.getAllPages();  // or DBManager.getAllPages()
-        Map<String, Integer> docFreq = new HashMap<>();
-        Map<String, Map<String, Integer>> termFreqs = new HashMap<>();
+    // Postings are read from memory-mapped segments; only the autocomplete
+    // vocabulary is cached on the heap, and it fills in lazily.
+    private volatile IndexSnapshot snapshot;
+    private volatile Vocabulary vocabulary;  // may lag the snapshot while a newer one is built
+    private final AtomicBoolean vocabularyBuilding = new AtomicBoolean();
+    private final Analyzer analyzer;
+    private final boolean positions;  // keep token positions for phrase and proximity matching
+    private final Bm25 bm25;
+    private final UserProfiles profiles;
+    private final QueryCache queryCache;
+    private final Object writeLock = new Object();  // serializes build, update and merge commits
+    private final int shards;  // for full builds
+    private final ExecutorService searchPool;  // ranks the shards of one query in parallel
+    private String signature = "";
+    private int maxDocId = 0;
+    private int shardCount = 1;  // of the current index; updates split new docs the same way
+    private ExecutorService merger;
+    private ScheduledExecutorService refresher;
 
-        int totalDocs = docs.size();
+    private record Doc(int id, String url, String title, String content) {}
 
-        for (Map.Entry<String, String> entry : docs.entrySet()) {
-            String url = entry.getKey();
-            String content = entry.getValue().toLowerCase().replaceAll("[^a-z0-9 ]", " ");
-            String[] words = content.split("\\s+");
+    private record Vocabulary(long generation, AutocompleteTrie trie) {}
 
-            Map<String, Integer> tf = new HashMap<>();
-            Set<String> seen = new HashSet<>();
+    // Segment files written for one generation (one per shard that got docs) and the docs' snippets
+    private record ShardSegments(List<String> names, Map<Integer, String> snippets) {}
+
+    public Indexer() {
+        this(Analyzer.standard(), true, Bm25.standard());
+    }
 
-            for (String word : words) {
-                if (word.isBlank()) continue;
-                tf.put(word, tf.getOrDefault(word, 0) + 1);
-                if (seen.add(word)) {
-                    docFreq.put(word, docFreq.getOrDefault(word, 0) + 1);
+    public Indexer(Analyzer analyzer, boolean positions, Bm25 bm25) {
+        this(analyzer, positions, bm25, DEFAULT_SHARDS);
+    }
+
+    // The same analyzer must be used to build and to query an index. Without
+    // positions the index is smaller, but phrases only match as plain AND queries
+    // and there is no proximity boost. BM25 parameters only affect querying.
+    // Full builds split docs by id hash into `shards` shards, each with its own
+    // segments, built in parallel and searched in parallel.
+    public Indexer(Analyzer analyzer, boolean positions, Bm25 bm25, int shards) {
+        this(analyzer, positions, bm25, shards, DEFAULT_QUERY_CACHE_SIZE, DEFAULT_QUERY_CACHE_TTL_MS);
+    }
+
+    // Up to queryCacheSize base result lists are cached (0 disables the cache); with a
+    // TTL an entry is also recomputed once it is that old, else only when the index changes
+    public Indexer(Analyzer analyzer, boolean positions, Bm25 bm25, int shards,
+                   int queryCacheSize, long queryCacheTtlMillis) {
+        if (shards < 1) throw new IllegalArgumentException("Invalid shard count: " + shards);
+        this.analyzer = analyzer;
+        this.positions = positions;
+        this.bm25 = bm25;
+        this.shards = shards;
+        this.queryCache = new QueryCache(queryCacheSize, queryCacheTtlMillis);
+        this.profiles = new UserProfiles(this::queryTerms);  // profiles hold parsed positive terms
+        // The searching thread ranks one shard itself; threads start only once a sharded index is searched
+        this.searchPool = Executors.newFixedThreadPool(Math.max(1, CORES - 1), daemon("index-search"));
+    }
+
+    // Growable (doc, tf, positions) list for one term, appended to from several indexing threads
+    private static final class PostingList {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int[] posStarts;        // null when positions aren't kept
+        int[] positions;
+        int positionCount = 0;
+        int size = 0;
+
+        PostingList(boolean withPositions) {
+            if (withPositions) {
+                posStarts = new int[4];
+                positions = new int[8];
+            }
+        }
+
+        synchronized void add(int doc, int tf, int[] termPositions, int from) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+                if (posStarts != null) posStarts = Arrays.copyOf(posStarts, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = tf;
+            if (posStarts != null) {
+                if (positionCount + tf > positions.length) {
+                    positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + tf));
                 }
+                System.arraycopy(termPositions, from, positions, positionCount, tf);
+                posStarts[size] = positionCount;
+                positionCount += tf;
+            }
+            size++;
+        }
+    }
+
+    // Open the segments persisted by earlier builds/updates. Returns false when there
+    // are none (or they can't be read); the caller should run buildIndex() then.
+    // A stale index still opens: call updateIndex() to index just the new pages.
+    public boolean open() {
+        try {
+            Map<String, String> meta = IndexStore.readMeta();
+            List<String> names = IndexStore.segmentNames(meta);
+            if (names.isEmpty()) {
+                System.out.println("ℹ️ No persisted index found.");
+                return false;
             }
-            termFreqs.put(url, tf);
-            urlToSnippet.put(url, extractSnippet(content, words));
+            String builtWith = meta.getOrDefault("analyzer", Analyzer.standard().name());
+            if (!builtWith.equals(analyzer.name())) {
+                System.out.println("ℹ️ Persisted index was built with the '" + builtWith
+                        + "' analyzer, not '" + analyzer.name() + "'.");
+                return false;
+            }
+            List<Segment> segments = new ArrayList<>();
+            for (String name : names) {
+                segments.add(Segment.open(IndexStore.directory().resolve(name)));
+            }
+            synchronized (writeLock) {
+                signature = meta.getOrDefault("pages_signature", "");
+                maxDocId = Integer.parseInt(meta.getOrDefault("max_doc_id", "0"));
+                shardCount = IndexStore.shardCount(meta);
+                publish(IndexSnapshot.of(Long.parseLong(meta.get("generation")), segments,
+                        IndexStore.loadTombstones(), DocMetadata.load()));
+            }
+            IndexSnapshot current = snapshot;
+            AutocompleteTrie trie = loadVocabulary(current.generation());
+            if (trie != null) vocabulary = new Vocabulary(current.generation(), trie);
+            System.out.println("✅ Opened persisted index (generation " + current.generation() + ", "
+                    + segments.size() + " segments in " + current.shards().size() + " shards, "
+                    + current.liveDocs() + " docs).");
+            return true;
+        } catch (SQLException | IOException | RuntimeException e) {
+            System.out.println("⚠️ Could not open persisted index: " + e.getMessage());
+            return false;
         }
+    }
 
-        for (String word : docFreq.keySet()) {
-            Map<String, Double> tfidfScores = new HashMap<>();
-            for (String url : termFreqs.keySet()) {
-                Map<String, Integer> tf = termFreqs.get(url);
-                if (!tf.containsKey(word)) continue;
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
 
-                double tfVal = tf.get(word);
-                double idfVal = Math.log((double) totalDocs / docFreq.get(word));
-                tfidfScores.put(url, tfVal * idfVal);
+    public UserProfiles getProfiles() {
+        return profiles;
+    }
+
+    // Shards of the current index (set when it was built), or 1 before one is open
+    public int getShardCount() {
+        synchronized (writeLock) {
+            return shardCount;
+        }
+    }
+
+    public long getGeneration() {
+        IndexSnapshot current = snapshot;
+        return current != null ? current.generation() : 0;
+    }
+
+    public IndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // True when pages were added, replaced or deleted since the current generation
+    public boolean isStale() {
+        try {
+            synchronized (writeLock) {
+                return !IndexStore.pagesSignature().equals(signature);
             }
-            index.put(word, tfidfScores);
-            trie.insert(word);
+        } catch (SQLException e) {
+            return false;
         }
+    }
 
-        System.out.println("✅ Index size: " + index.size());
-        System.out.println("🔍 Total pages fetched from DB: " + pages.size());
+    // Poll for crawl changes and index them in the background
+    public synchronized void startAutoRefresh(long intervalMillis) {
+        if (refresher != null) return;
+        refresher = Executors.newSingleThreadScheduledExecutor(daemon("index-refresh"));
+        refresher.scheduleWithFixedDelay(() -> {
+            if (snapshot != null && isStale()) updateIndex();
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
 
-        saveIndexToDB();
+    @Override
+    public synchronized void close() {
+        if (refresher != null) refresher.shutdownNow();
+        if (merger != null) merger.shutdown();
+        searchPool.shutdown();
+        refresher = null;
+        merger = null;
     }
 
-    private Map<String, String> loadDocuments() {
-        Map<String, String> docs = new HashMap<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            ResultSet rs = conn.createStatement().executeQuery("SELECT url, content FROM pages");
-            while (rs.next()) {
-                docs.put(rs.getString("url"), rs.getString("content"));
+    // Reload the metadata columns (e.g. after PageRank changed) without touching segments
+    private void refreshMetadata() throws SQLException {
+        synchronized (writeLock) {
+            IndexSnapshot current = snapshot;
+            if (current != null) {
+                snapshot = current.withMetadata(DocMetadata.load());
+                queryCache.invalidateAll();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return docs;
     }
 
-    private void saveIndexToDB() {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            conn.createStatement().executeUpdate("DELETE FROM inverted_index");
+    private void publish(IndexSnapshot next) {
+        snapshot = next;
+        queryCache.invalidateAll();
+    }
+
+    // Snippet around the densest cluster of query terms, each match wrapped in open/close.
+    // Only call this for results being shown: it reads and scans the page text.
+    public String snippet(String query, int docId, String open, String close) {
+        return snippet(queryTerms(query), docId, open, close);
+    }
 
-            PreparedStatement pstmt = conn.prepareStatement(
-                "INSERT INTO inverted_index (term, url, score) VALUES (?, ?, ?)"
-            );
+    private String snippet(List<String> terms, int docId, String open, String close) {
+        long start = System.nanoTime();
+        try {
+            return buildSnippet(terms, docId, open, close);
+        } finally {
+            SNIPPET_TIME.recordSince(start);
+        }
+    }
 
-            for (String term : index.keySet()) {
-                for (Map.Entry<String, Double> entry : index.get(term).entrySet()) {
-                    pstmt.setString(1, term);
-                    pstmt.setString(2, entry.getKey());
-                    pstmt.setDouble(3, entry.getValue());
-                    pstmt.addBatch();
+    private String buildSnippet(List<String> terms, int docId, String open, String close) {
+        String content = null;
+        try {
+            content = Database.read(db -> {
+                PreparedStatement ps = db.prepare("SELECT content FROM pages WHERE id = ?");
+                ps.setInt(1, docId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString("content") : null;
                 }
-            }
+            });
+        } catch (SQLException e) {
+            // fall back to the stored lead snippet
+        }
+        if (content == null || content.isBlank()) {
+            return Objects.requireNonNullElse(leadSnippet(docId), "(No snippet available)");
+        }
+        return SnippetBuilder.build(analyzer, content, terms, open, close);
+    }
+
+    // Terms to highlight or add to a profile: the positive ones, without operators,
+    // field filters or excluded terms
+    private List<String> queryTerms(String query) {
+        return new ArrayList<>(new LinkedHashSet<>(QueryParser.parse(analyzer, query).words()));
+    }
 
-            pstmt.executeBatch();
-            System.out.println("✅ Inverted index saved to database.");
+    // Opening text stored at index time, for pages whose content is unavailable
+    private String leadSnippet(int docId) {
+        try {
+            return Database.read(db -> {
+                PreparedStatement ps = db.prepare("SELECT snippet FROM index_docs WHERE doc_id = ?");
+                ps.setInt(1, docId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString("snippet") : null;
+                }
+            });
         } catch (SQLException e) {
-            System.out.println("❌ Error saving inverted index: " + e.getMessage());
+            return null;
         }
     }
 
-    public List<String> getAutocompleteSuggestions(String prefix) {
-        return trie.autocomplete(prefix.toLowerCase());
+    // Vocabulary for autocomplete, weighted by document frequency plus query-log
+    // popularity. Saved per index generation, so a restart just loads the file.
+    // After an index update the previous vocabulary keeps answering while the new
+    // one is built in the background; only the very first lookup waits for a build.
+    private AutocompleteTrie vocabulary() {
+        IndexSnapshot snap = snapshot;
+        Vocabulary current = vocabulary;
+        if (current != null && (snap == null || current.generation() == snap.generation())) return current.trie();
+        if (snap == null) return AutocompleteTrie.empty();
+        if (current == null) return refreshVocabulary();
+        if (vocabularyBuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("vocabulary-build").start(() -> {
+                try {
+                    refreshVocabulary();
+                } finally {
+                    vocabularyBuilding.set(false);
+                }
+            });
+        }
+        return current.trie();
     }
 
-    private String extractSnippet(String content, String[] words) {
-        for (String word : words) {
-            if (word.isBlank()) continue;
-            int idx = content.indexOf(word);
-            if (idx != -1) {
-                int start = Math.max(0, idx - 60);
-                int end = Math.min(content.length(), idx + 100);
-                return content.substring(start, end).replaceAll("\\s+", " ");
+    // Loads (or builds and saves) the vocabulary of the current generation and publishes it
+    private synchronized AutocompleteTrie refreshVocabulary() {
+        IndexSnapshot snap = snapshot;
+        Vocabulary current = vocabulary;
+        if (current != null && current.generation() == snap.generation()) return current.trie();
+        AutocompleteTrie loaded = loadVocabulary(snap.generation());
+        if (loaded == null) {
+            loaded = buildVocabulary(snap);
+            String name = IndexStore.autocompleteName(snap.generation());
+            try {
+                loaded.save(IndexStore.directory().resolve(name));
+                IndexStore.deleteAutocompleteExcept(name);
+            } catch (IOException e) {
+                System.out.println("⚠️ Could not save autocomplete vocabulary: " + e.getMessage());
             }
         }
-        return content.substring(0, Math.min(160, content.length())).replaceAll("\\s+", " ");
+        vocabulary = new Vocabulary(snap.generation(), loaded);  // a newer generation rebuilds again
+        return loaded;
     }
 
-    private boolean isUrlAllowed(String url, String domainFilter, String afterDate) {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            String sql = "SELECT domain, crawled_at FROM pages WHERE url = ?";
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, url);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                String domain = rs.getString("domain");
-                String crawledAt = rs.getString("crawled_at");
+    private static AutocompleteTrie loadVocabulary(long generation) {
+        Path file = IndexStore.directory().resolve(IndexStore.autocompleteName(generation));
+        if (!Files.exists(file)) return null;
+        try {
+            return AutocompleteTrie.load(file);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️ Could not load autocomplete vocabulary: " + e.getMessage());
+            return null;
+        }
+    }
 
-                if (domainFilter != null && !domain.contains(domainFilter)) return false;
-                if (afterDate != null && crawledAt.compareTo(afterDate) < 0) return false;
+    private AutocompleteTrie buildVocabulary(IndexSnapshot snap) {
+        AutocompleteTrie.Builder builder = new AutocompleteTrie.Builder();
+        for (Segment segment : snap.segments()) {
+            for (Iterator<Segment.TermInfo> it = segment.terms(); it.hasNext(); ) {
+                Segment.TermInfo info = it.next();
+                if (!Segment.isTitleTerm(info.term())) builder.add(info.term(), info.df());
             }
-        } catch (Exception e) {
-            return false;
         }
-        return true;
+        // Only words already in the index are suggested; searches make them rank higher
+        try {
+            Database.read(db -> {
+                String sql = "SELECT query, COUNT(*) FROM user_queries GROUP BY query";
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        long searches = rs.getLong(2);
+                        for (String term : new LinkedHashSet<>(analyzer.terms(rs.getString(1)))) {
+                            if (snap.docFreq(term) > 0) builder.add(term, searches * QUERY_LOG_WEIGHT);
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.out.println("⚠️ Could not read the query log for autocomplete: " + e.getMessage());
+        }
+        return builder.build();
     }
 
-    public List<String> search(String query, String userId, String domainFilter, String afterDate) {
-        query = query.toLowerCase();
-        String[] words = query.split("\\s+");
+    // Full rebuild: every page goes into one fresh segment per shard, replacing all others
+    public void buildIndex() {
+        DBManager.initDB();
+        synchronized (writeLock) {
+            long start = System.nanoTime();
+            String newSignature;
+            long nextGeneration;
+            try {
+                newSignature = IndexStore.pagesSignature();  // taken before reading so a concurrent crawl marks it stale
+                nextGeneration = IndexStore.nextGeneration();
+            } catch (SQLException e) {
+                System.out.println("❌ Error reading index metadata: " + e.getMessage());
+                return;
+            }
+            List<Doc> docs = loadDocuments("SELECT id, url, title, content FROM pages", 0);
+            ShardSegments written = writeShards(docs, nextGeneration, shards, true);
+            if (written == null) return;
 
-        Map<String, Double> scores = new HashMap<>();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("🔍 Indexed %d pages into %d shards in %.2fs (%.0f docs/sec)%n",
+                    docs.size(), shards, seconds, docs.size() / Math.max(seconds, 1e-9));
 
-        for (String word : words) {
-            Map<String, Double> tfidfScores = index.getOrDefault(word, new HashMap<>());
-            for (Map.Entry<String, Double> entry : tfidfScores.entrySet()) {
-                String url = entry.getKey();
-                if (!isUrlAllowed(url, domainFilter, afterDate)) continue;
-                scores.put(url, scores.getOrDefault(url, 0.0) + entry.getValue());
+            int newMaxDocId = docs.stream().mapToInt(Doc::id).max().orElse(0);
+            List<String> names = written.names();
+            try {
+                IndexStore.commit(nextGeneration, newSignature, names, newMaxDocId, shards, analyzer.name(), db -> {
+                    db.execute("DELETE FROM index_docs");
+                    db.execute("DELETE FROM index_tombstones");
+                    return insertSnippets(db, docs, written.snippets());
+                });
+                List<Segment> segments = new ArrayList<>();
+                for (String name : names) segments.add(Segment.open(IndexStore.directory().resolve(name)));
+                signature = newSignature;
+                maxDocId = newMaxDocId;
+                shardCount = shards;
+                publish(IndexSnapshot.of(nextGeneration, segments, new BitSet(), DocMetadata.load()));
+                IndexStore.deleteSegmentsExcept(names);
+                System.out.println("✅ Index segments " + String.join(", ", names) + " saved (generation "
+                        + nextGeneration + ").");
+            } catch (SQLException | IOException e) {
+                System.out.println("❌ Error saving inverted index: " + e.getMessage());
             }
         }
+    }
 
-        // Personalization
-        if (userId != null) {
-            List<String> pastQueries = DBManager.getUserQueryHistory(userId);
-            Set<String> pastTerms = new HashSet<>();
-            for (String q : pastQueries) {
-                for (String w : q.split("\\s+")) {
-                    pastTerms.add(w);
-                }
+    // Incremental update: only pages added since the last generation are tokenized,
+    // into a small delta segment; replaced/deleted pages are already tombstoned by
+    // the pages_tombstone trigger. Cost tracks the crawl delta, not the corpus.
+    public void updateIndex() {
+        if (snapshot == null) {
+            buildIndex();
+            return;
+        }
+        synchronized (writeLock) {
+            long start = System.nanoTime();
+            String newSignature;
+            long nextGeneration;
+            BitSet deleted;
+            try {
+                newSignature = IndexStore.pagesSignature();
+                nextGeneration = IndexStore.nextGeneration();
+                deleted = IndexStore.loadTombstones();
+            } catch (SQLException e) {
+                System.out.println("❌ Error reading index metadata: " + e.getMessage());
+                return;
+            }
+            // Page ids are AUTOINCREMENT, so every page inserted or replaced since the
+            // last generation has a larger id (crawled_at only has 1-second resolution)
+            List<Doc> docs = loadDocuments("SELECT id, url, title, content FROM pages WHERE id > ?", maxDocId);
+
+            IndexSnapshot current = snapshot;
+            List<String> names = namesOf(current.segments());
+            List<Segment> segments = new ArrayList<>(current.segments());
+            ShardSegments written = writeShards(docs, nextGeneration, shardCount, false);
+            if (written == null) return;
+            names.addAll(written.names());
+
+            int newMaxDocId = Math.max(maxDocId, docs.stream().mapToInt(Doc::id).max().orElse(0));
+            try {
+                IndexStore.commit(nextGeneration, newSignature, names, newMaxDocId, shardCount, analyzer.name(),
+                        db -> insertSnippets(db, docs, written.snippets()));
+                for (String name : written.names()) segments.add(Segment.open(IndexStore.directory().resolve(name)));
+                DocMetadata metadata = current.metadata().withDocsAfter(maxDocId);
+                signature = newSignature;
+                maxDocId = newMaxDocId;
+                publish(IndexSnapshot.of(nextGeneration, segments, deleted, metadata));
+            } catch (SQLException | IOException e) {
+                System.out.println("❌ Error saving index update: " + e.getMessage());
+                return;
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("🔄 Index update: %d new pages, %d deleted docs, %d segments (%.2fs)%n",
+                    docs.size(), deleted.cardinality(), segments.size(), seconds);
+        }
+        scheduleMerge();
+    }
+
+    private synchronized void scheduleMerge() {
+        if (merger == null) merger = Executors.newSingleThreadExecutor(daemon("index-merge"));
+        merger.submit(this::maybeMerge);
+    }
+
+    // Background merge: fold the smallest segments together once there are too
+    // many, and rewrite segments carrying too many deleted docs. Global statistics
+    // (live doc count, document frequencies) are exact again after a merge.
+    // Segments only merge within their shard, so the policy applies per shard.
+    void maybeMerge() {
+        IndexSnapshot current = snapshot;
+        if (current == null) return;
+        for (IndexSnapshot shard : current.shards()) mergeShard(current, shard.segments());
+    }
+
+    private void mergeShard(IndexSnapshot current, List<Segment> shardSegments) {
+        List<Segment> bySize = new ArrayList<>(shardSegments);
+        bySize.sort(Comparator.comparingInt(Segment::docCount));
+        Set<Segment> inputs = new LinkedHashSet<>();
+        if (bySize.size() > MAX_SEGMENTS) {
+            inputs.addAll(bySize.subList(0, Math.min(bySize.size(), MERGE_FACTOR)));
+        }
+        for (Segment segment : bySize) {
+            if (deletedRatio(segment, current.deleted()) > MAX_DELETED_RATIO) inputs.add(segment);
+        }
+        if (inputs.isEmpty()) return;
+
+        long start = System.nanoTime();
+        List<Segment> sources = new ArrayList<>(inputs);
+        sources.sort(Comparator.comparingInt(s -> s.docCount() == 0 ? 0 : s.docIdAt(0)));
+        Path target = sources.get(0).path().resolveSibling("segment-" + current.generation() + "m.seg");
+        String name = IndexStore.nameOf(target);
+        int live;
+        try {
+            live = SegmentMerger.merge(sources, current.deleted(), target);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️ Segment merge failed: " + e.getMessage());
+            return;
+        }
+
+        synchronized (writeLock) {
+            IndexSnapshot latest = snapshot;
+            if (!latest.segments().containsAll(sources)) {
+                IndexStore.deleteSegmentsExcept(namesOf(latest.segments()));  // rebuilt meanwhile
+                return;
             }
-            for (String word : pastTerms) {
-                Map<String, Double> pastScores = index.getOrDefault(word, new HashMap<>());
-                for (Map.Entry<String, Double> entry : pastScores.entrySet()) {
-                    String url = entry.getKey();
-                    scores.put(url, scores.getOrDefault(url, 0.0) + entry.getValue() * 0.5);
+            try {
+                Segment merged = Segment.open(IndexStore.directory().resolve(name));
+                List<Segment> segments = new ArrayList<>();
+                boolean placed = false;
+                for (Segment segment : latest.segments()) {
+                    if (!sources.contains(segment)) {
+                        segments.add(segment);
+                    } else if (!placed) {
+                        segments.add(merged);
+                        placed = true;
+                    }
+                }
+                long nextGeneration = IndexStore.nextGeneration();
+
+                // Tombstones for docs that no segment holds any more are done with
+                BitSet remaining = (BitSet) latest.deleted().clone();
+                List<Integer> purged = new ArrayList<>();
+                for (int id = remaining.nextSetBit(0); id >= 0; id = remaining.nextSetBit(id + 1)) {
+                    boolean held = false;
+                    for (Segment segment : segments) held |= segment.contains(id);
+                    if (!held) purged.add(id);
                 }
+                for (int id : purged) remaining.clear(id);
+
+                List<String> names = namesOf(segments);
+                IndexStore.commit(nextGeneration, signature, names, maxDocId, shardCount, analyzer.name(), db -> {
+                    PreparedStatement tomb = db.prepare("DELETE FROM index_tombstones WHERE doc_id = ?");
+                    PreparedStatement docs = db.prepare("DELETE FROM index_docs WHERE doc_id = ?");
+                    for (int id : purged) {
+                        tomb.setInt(1, id);
+                        tomb.addBatch();
+                        docs.setInt(1, id);
+                        docs.addBatch();
+                    }
+                    tomb.executeBatch();
+                    return docs.executeBatch();
+                });
+                publish(IndexSnapshot.of(nextGeneration, segments, remaining, latest.metadata()));
+                IndexStore.deleteSegmentsExcept(names);
+                System.out.printf("🧩 Merged %d segments into %s (%d live docs, %d purged) in %.2fs%n",
+                        sources.size(), name, live, purged.size(), (System.nanoTime() - start) / 1e9);
+            } catch (SQLException | IOException e) {
+                System.out.println("⚠️ Could not publish merged segment: " + e.getMessage());
             }
         }
+    }
+
+    private static double deletedRatio(Segment segment, BitSet deleted) {
+        if (segment.docCount() == 0) return 1.0;
+        int dead = 0;
+        for (int id = deleted.nextSetBit(0); id >= 0; id = deleted.nextSetBit(id + 1)) {
+            if (segment.contains(id)) dead++;
+        }
+        return (double) dead / segment.docCount();
+    }
+
+    private static List<String> namesOf(List<Segment> segments) {
+        List<String> names = new ArrayList<>();
+        for (Segment segment : segments) names.add(IndexStore.nameOf(segment.path()));
+        return names;
+    }
+
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Splits docs by shard and writes each shard's segment concurrently. Shards without
+    // docs get no segment, except shard 0 when keepEmpty (a full build always leaves
+    // one). Returns null if any segment could not be written.
+    private ShardSegments writeShards(List<Doc> docs, long generation, int shardCount, boolean keepEmpty) {
+        List<List<Doc>> byShard = new ArrayList<>(shardCount);
+        for (int s = 0; s < shardCount; s++) byShard.add(new ArrayList<>());
+        for (Doc doc : docs) byShard.get(IndexStore.shardOf(doc.id(), shardCount)).add(doc);
+
+        String[] names = new String[shardCount];
+        List<Map<Integer, String>> written = IntStream.range(0, shardCount).parallel().mapToObj(s -> {
+            if (byShard.get(s).isEmpty() && !(keepEmpty && s == 0)) return Map.<Integer, String>of();
+            names[s] = IndexStore.segmentName(generation, s, shardCount);
+            return writeSegment(byShard.get(s), names[s]);
+        }).toList();
+
+        List<String> segmentNames = new ArrayList<>();
+        Map<Integer, String> snippets = new HashMap<>(docs.size() * 2);
+        for (int s = 0; s < shardCount; s++) {
+            if (written.get(s) == null) return null;  // files already written are cleaned up on the next commit
+            if (names[s] != null) segmentNames.add(names[s]);
+            snippets.putAll(written.get(s));
+        }
+        return new ShardSegments(segmentNames, snippets);
+    }
+
+    // Tokenizes docs in parallel, each document's term counts going straight into the
+    // shared postings dictionary, then streams the postings into a segment file.
+    // Returns the snippets for the docs, or null if the segment could not be written.
+    private Map<Integer, String> writeSegment(List<Doc> docs, String name) {
+        long start = System.nanoTime();
+        int totalDocs = docs.size();
+        Map<String, PostingList> termCounts = new ConcurrentHashMap<>();
+        Map<Integer, String> snippets = new ConcurrentHashMap<>();
+        int[] lengths = new int[totalDocs];
+        int[] titleLengths = new int[totalDocs];
+
+        LongAdder analyzeNanos = new LongAdder();
+        long chars = IntStream.range(0, totalDocs).parallel().mapToLong(i -> {
+            Doc doc = docs.get(i);
+            String raw = doc.content() != null ? doc.content() : "";
+            String title = doc.title() != null ? doc.title() : "";
+            TermCounter tf = TERM_COUNTERS.get();
+            TermCounter titleTf = TITLE_COUNTERS.get();
+            long analyzeStart = System.nanoTime();
+            lengths[i] = analyzeField(raw, tf);
+            titleLengths[i] = analyzeField(title, titleTf);
+            analyzeNanos.add(System.nanoTime() - analyzeStart);
+            addPostings(termCounts, doc.id(), tf, "");
+            addPostings(termCounts, doc.id(), titleTf, Segment.TITLE_PREFIX);
+            snippets.put(doc.id(), leadSnippet(raw));
+            return raw.length() + title.length();
+        }).sum();
+        double analyzeSeconds = analyzeNanos.sum() / 1e9;  // summed over threads
+        System.out.printf("🔤 Analyzed %.1f MB of text (%.1f MB/s per thread)%n",
+                chars / 1e6, chars / 1e6 / Math.max(analyzeSeconds, 1e-9));
 
-        // ✅ Boost with PageRank (BEFORE sorting)
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            PreparedStatement ps = conn.prepareStatement("SELECT pagerank FROM pages WHERE url = ?");
-            for (String url : scores.keySet()) {
-                ps.setString(1, url);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    double pr = rs.getDouble("pagerank");
-                    scores.put(url, scores.get(url) + pr * 0.2);  // optional scaling
+        long postingCount = 0;
+        SegmentWriter writer = null;
+        try {
+            writer = new SegmentWriter(IndexStore.directory().resolve(name), positions);
+            Integer[] order = new Integer[totalDocs];
+            for (int i = 0; i < totalDocs; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingInt(i -> docs.get(i).id()));
+            for (int i : order) {
+                writer.addDocument(docs.get(i).id(), lengths[i], titleLengths[i], docs.get(i).url());
+            }
+            List<String> terms = new ArrayList<>(termCounts.keySet());
+            terms.sort(Indexer::compareUtf8);
+            for (String term : terms) {
+                PostingList list = termCounts.get(term);
+                long[] packed = new long[list.size];
+                for (int p = 0; p < list.size; p++) {
+                    packed[p] = ((long) list.docs[p] << 32) | p;
+                }
+                Arrays.sort(packed);  // postings must be in doc id order
+                writer.startTerm(term);
+                for (long entry : packed) {
+                    int p = (int) entry;
+                    if (positions) {
+                        writer.addPosting(list.docs[p], list.positions, list.posStarts[p], list.freqs[p]);
+                    } else {
+                        writer.addPosting(list.docs[p], list.freqs[p]);
+                    }
                 }
+                postingCount += list.size;
             }
-        } catch (SQLException e) {
+            writer.close();
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) writer.abort();
+            System.out.println("❌ Error writing index segment: " + e.getMessage());
+            return null;
+        }
+        INDEXED_DOCS.add(totalDocs);
+        POSTINGS_WRITTEN.add(postingCount);
+        SEGMENT_TIME.recordSince(start);
+        System.out.println("✅ Segment " + name + ": " + termCounts.size() + " terms, " + postingCount + " postings");
+        return snippets;
+    }
+
+    // Counts one field's terms (and groups their positions); returns its token count
+    private int analyzeField(String text, TermCounter counter) {
+        counter.clear();
+        int[] length = {0};
+        analyzer.analyze(text, (term, len, position, start, end) -> {
+            counter.add(term, len);
+            length[0]++;
+        });
+        if (positions) counter.groupPositions();
+        return length[0];
+    }
+
+    private void addPostings(Map<String, PostingList> termCounts, int docId, TermCounter counter, String prefix) {
+        for (int t = 0; t < counter.size(); t++) {
+            String term = prefix.isEmpty() ? counter.term(t) : prefix + counter.term(t);
+            termCounts.computeIfAbsent(term, k -> new PostingList(positions))
+                      .add(docId, counter.count(t), counter.positions(), positions ? counter.positionsStart(t) : 0);
+        }
+    }
+
+    private static int[] insertSnippets(Database.Handle db, List<Doc> docs, Map<Integer, String> snippets)
+            throws SQLException {
+        PreparedStatement docStmt = db.prepare(
+            "INSERT OR REPLACE INTO index_docs (doc_id, url, snippet) VALUES (?, ?, ?)"
+        );
+        for (Doc doc : docs) {
+            docStmt.setInt(1, doc.id());
+            docStmt.setString(2, doc.url());
+            docStmt.setString(3, snippets.get(doc.id()));
+            docStmt.addBatch();
+        }
+        return docStmt.executeBatch();
+    }
+
+    private List<Doc> loadDocuments(String sql, int afterId) {
+        List<Doc> docs = new ArrayList<>();
+        try {
+            Database.read(db -> {
+                PreparedStatement ps = db.prepare(sql);
+                if (sql.contains("?")) ps.setInt(1, afterId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        docs.add(new Doc(rs.getInt("id"), rs.getString("url"), rs.getString("title"),
+                                rs.getString("content")));
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
             e.printStackTrace();
         }
+        return docs;
+    }
+
+    // Segment dictionaries are ordered by unsigned UTF-8 bytes
+    static int compareUtf8(String a, String b) {
+        return Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public List<String> getAutocompleteSuggestions(String prefix) {
+        return getAutocompleteSuggestions(prefix, AutocompleteTrie.DEFAULT_LIMIT);
+    }
 
-        // Sort and return
-        List<String> results = new ArrayList<>(scores.keySet());
-        results.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+    // At most `limit` indexed words starting with prefix, most popular first. The prefix
+    // is folded like indexed terms, so "Caf" and "café" both complete to "cafe".
+    public List<String> getAutocompleteSuggestions(String prefix, int limit) {
+        return vocabulary().autocomplete(Analyzer.fold(prefix), limit);
+    }
 
-        for (String url : results) {
-            String snippet = urlToSnippet.getOrDefault(url, "(No snippet available)");
-            for (String word : words) {
-                snippet = snippet.replaceAll("(?i)(" + word + ")", "\u001B[1m$1\u001B[0m");
+    // Opening text of a page with whitespace runs collapsed, built in one pass
+    private static String leadSnippet(String content) {
+        StringBuilder snippet = new StringBuilder(SNIPPET_LENGTH);
+        boolean space = false;
+        for (int i = 0; i < content.length() && snippet.length() < SNIPPET_LENGTH; i++) {
+            char c = content.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space && snippet.length() > 0) snippet.append(' ');
+                snippet.append(c);
+                space = false;
             }
-            System.out.println("🔗 " + url);
-            System.out.println("📝 " + snippet);
-            System.out.println();
         }
+        return snippet.toString();
+    }
+
+    // Term weights use global statistics over all live segments
+    private double idf(IndexSnapshot snap, String term) {
+        return bm25.idf(snap.docFreq(term), snap.liveDocs());
+    }
+
+    public List<SearchResult> search(String query, int k, SearchFilters filters) {
+        return search(query, k, filters, UserProfile.EMPTY);
+    }
+
+    // Top-k search. A non-empty profile re-ranks a wider candidate set by how well
+    // each candidate matches the user's interests; it never adds new matches.
+    public List<SearchResult> search(String query, int k, SearchFilters filters, UserProfile profile) {
+        IndexSnapshot snap = snapshot;
+        if (snap == null || k <= 0) return new ArrayList<>();
+        long start = System.nanoTime();
+        QUERIES.increment();
+        boolean personalized = profile != null && !profile.isEmpty();
+        QueryParser.Query parsed = QueryParser.parse(analyzer, query);
+
+        // Query terms count once per occurrence; repeated terms just get a larger weight.
+        // Each term is matched in the body and, as a separately boosted clause, the title.
+        Map<String, Float> counts = new LinkedHashMap<>();
+        for (String word : parsed.words()) counts.merge(word, 1.0f, Float::sum);
+        String[] terms = counts.keySet().toArray(new String[0]);
+        Map<String, Float> termWeights = new LinkedHashMap<>();
+        for (Map.Entry<String, Float> entry : counts.entrySet()) {
+            String titleTerm = Segment.titleTerm(entry.getKey());
+            termWeights.put(entry.getKey(), (float) (idf(snap, entry.getKey()) * entry.getValue()));
+            termWeights.put(titleTerm, (float) (idf(snap, titleTerm) * bm25.titleBoost() * entry.getValue()));
+        }
+        String[] fieldTerms = termWeights.keySet().toArray(new String[0]);
+        float[] weights = new float[fieldTerms.length];
+        for (int i = 0; i < fieldTerms.length; i++) weights[i] = termWeights.get(fieldTerms[i]);
+        Bm25.Scoring scoring = bm25.scoring(snap);
+        TERMS_TIME.recordSince(start);
 
+        // site: and after: in the query take precedence over the passed filters
+        SearchFilters f = filters != null ? filters : SearchFilters.NONE;
+        if (parsed.site() != null || parsed.after() != null) {
+            f = new SearchFilters(parsed.site() != null ? parsed.site() : f.site(),
+                    parsed.after() != null ? parsed.after() : f.after());
+        }
+        boolean proximity = positions && terms.length > 1;
+        int candidates = personalized || proximity ? (int) Math.min(Integer.MAX_VALUE, Math.max(k * 4L, 50)) : k;
+
+        // Base results are cached; personalization is applied to a copy on every request
+        String key = QueryCache.key(parsed.cacheKeyParts(), f, candidates);
+        QueryCache.Hits base = candidates <= MAX_CACHED_RESULTS ? queryCache.get(key, snap) : null;
+        if (base != null) {
+            CACHE_HITS.increment();
+        } else {
+            // Scatter-gather: each shard ranks its own docs with the index-wide term weights
+            // and length tables, so shard scores compare directly and the merge is exact
+            float[] idfs = null;
+            if (proximity) {
+                idfs = new float[terms.length];
+                for (int i = 0; i < terms.length; i++) idfs[i] = (float) idf(snap, terms[i]);
+            }
+            ShardQuery shardQuery = new ShardQuery(parsed, scoring, termWeights, fieldTerms, weights, terms, idfs,
+                    snap.metadata().filter(f.site(), f.after()), proximity, candidates);
+            List<IndexSnapshot> views = snap.shards();
+            base = views.size() == 1 ? shardQuery.rank(views.get(0)) : gather(shardQuery, views);
+            if (candidates <= MAX_CACHED_RESULTS) queryCache.put(key, snap, base);
+        }
+        int[] docs = base.docs();
+        float[] scores = base.scores().clone();
+        if (personalized) {
+            long stage = System.nanoTime();
+            personalize(snap, scoring, profile, docs, scores);
+            PERSONALIZE_TIME.recordSince(stage);
+        }
+        long stage = System.nanoTime();
+        if (docs.length > k || personalized) {
+            TopDocs reranked = new TopDocs(k);
+            for (int i = 0; i < docs.length; i++) reranked.insert(docs[i], scores[i]);
+            scores = new float[reranked.size()];
+            docs = reranked.drainDocs(scores);
+        }
+
+        List<SearchResult> results = new ArrayList<>(docs.length);
+        for (int i = 0; i < docs.length; i++) {
+            String url = snap.url(docs[i]);
+            if (url != null) results.add(new SearchResult(docs[i], url, scores[i]));
+        }
+        RESULTS_TIME.recordSince(stage);
+        SEARCH_TIME.recordSince(start);
         return results;
     }
 
-    public void computePageRank() {
-        final double d = 0.85;
-        final int iterations = 20;
-        final Map<String, Set<String>> incomingLinks = new HashMap<>();
-        final Map<String, Set<String>> outgoingLinks = new HashMap<>();
-        final Map<String, Double> pageRank = new HashMap<>();
-
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            ResultSet rs = conn.createStatement().executeQuery("SELECT url, links FROM pages");
-            while (rs.next()) {
-                String url = rs.getString("url");
-                String linksStr = rs.getString("links");
-                Set<String> links = new HashSet<>();
-                if (linksStr != null && !linksStr.isBlank()) {
-                    links.addAll(Arrays.asList(linksStr.split(",")));
-                }
-                outgoingLinks.put(url, links);
-                pageRank.put(url, 1.0);
-                for (String link : links) {
-                    incomingLinks.computeIfAbsent(link, k -> new HashSet<>()).add(url);
-                }
+    // One query's ranking inputs, shared by the shards that evaluate it
+    private record ShardQuery(QueryParser.Query parsed, Bm25.Scoring scoring, Map<String, Float> termWeights,
+                              String[] fieldTerms, float[] weights, String[] terms, float[] idfs, BitSet allowed,
+                              boolean proximity, int candidates) {
+
+        // Best candidates in one shard, proximity-boosted when the query has several terms
+        QueryCache.Hits rank(IndexSnapshot shard) {
+            long stage = System.nanoTime();
+            BitSet shardAllowed = allowed;
+            BitSet phraseMatches = PositionalMatcher.phraseFilter(shard, parsed.phrases());
+            if (phraseMatches != null) {
+                if (allowed != null) phraseMatches.and(allowed);  // allowed is shared, so never modified
+                shardAllowed = phraseMatches;
             }
+            BitSet rejected = null;
+            for (String[] phrase : parsed.excludedPhrases()) {
+                BitSet matches = PositionalMatcher.phraseFilter(shard, List.<String[]>of(phrase));
+                if (rejected == null) rejected = matches;
+                else rejected.or(matches);
+            }
+            FILTER_TIME.recordSince(stage);
 
-            for (int i = 0; i < iterations; i++) {
-                Map<String, Double> newRanks = new HashMap<>();
-                for (String page : pageRank.keySet()) {
-                    double rank = 1 - d;
-                    Set<String> incoming = incomingLinks.getOrDefault(page, Collections.emptySet());
-                    for (String inPage : incoming) {
-                        int outCount = outgoingLinks.getOrDefault(inPage, Collections.emptySet()).size();
-                        if (outCount > 0) {
-                            rank += d * (pageRank.get(inPage) / outCount);
-                        }
-                    }
-                    newRanks.put(page, rank);
-                }
-                pageRank.putAll(newRanks);
+            // ✅ Boost with PageRank (part of the score, so pruning accounts for it)
+            stage = System.nanoTime();
+            TopDocs top;
+            if (parsed.isConjunction()) {
+                top = BooleanSearcher.search(shard, scoring, withTitles(parsed.groups()),
+                        withTitles(parsed.excludedTerms()), termWeights, shardAllowed, rejected, PAGERANK_WEIGHT,
+                        candidates);
+            } else {
+                // A single term or a single OR: MaxScore prunes the union
+                top = MaxScoreSearcher.search(shard, scoring, fieldTerms, weights, shardAllowed, PAGERANK_WEIGHT,
+                        candidates);
+            }
+            float[] topScores = new float[top.size()];
+            int[] topDocs = top.drainDocs(topScores);
+            RANK_TIME.recordSince(stage);
+            if (proximity) {
+                stage = System.nanoTime();
+                PositionalMatcher.proximityBoost(shard, terms, idfs, PROXIMITY_WEIGHT, topDocs, topScores);
+                TopDocs reranked = new TopDocs(candidates);
+                for (int i = 0; i < topDocs.length; i++) reranked.insert(topDocs[i], topScores[i]);
+                topScores = new float[reranked.size()];
+                topDocs = reranked.drainDocs(topScores);
+                PROXIMITY_TIME.recordSince(stage);
             }
+            return new QueryCache.Hits(topDocs, topScores);
+        }
+    }
+
+    // Ranks the shards in parallel (the first on this thread) and merges their best
+    // candidates. Ties break on doc id, as within a shard, so results don't depend on
+    // the shard count. With several shards, proximity re-ranks each shard's own
+    // candidates, so it sees at least the docs it would on an unsharded index.
+    private QueryCache.Hits gather(ShardQuery query, List<IndexSnapshot> shards) {
+        List<Future<QueryCache.Hits>> pending = new ArrayList<>(shards.size() - 1);
+        for (IndexSnapshot shard : shards.subList(1, shards.size())) {
+            pending.add(searchPool.submit(() -> query.rank(shard)));
+        }
+        TopDocs merged = new TopDocs(query.candidates());
+        try {
+            add(merged, query.rank(shards.get(0)));
+            for (Future<QueryCache.Hits> future : pending) add(merged, future.get());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } finally {
+            for (Future<QueryCache.Hits> future : pending) future.cancel(false);
+        }
+        float[] scores = new float[merged.size()];
+        int[] docs = merged.drainDocs(scores);
+        return new QueryCache.Hits(docs, scores);
+    }
+
+    private static void add(TopDocs merged, QueryCache.Hits hits) {
+        for (int i = 0; i < hits.docs().length; i++) merged.insert(hits.docs()[i], hits.scores()[i]);
+    }
+
+    // Personalization: add the BM25 score times the profile weight for each profile
+    // term the candidate contains. Only the candidates are probed (via skip data), so the
+    // cost depends on k and the profile size, not on the user's history.
+    private void personalize(IndexSnapshot snap, Bm25.Scoring scoring, UserProfile profile,
+                             int[] docs, float[] scores) {
+        Integer[] order = new Integer[docs.length];
+        for (int i = 0; i < docs.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> docs[i]));  // advance() needs ascending targets
+
+        for (int p = 0; p < profile.size(); p++) {
+            String term = profile.term(p);  // already an index term (see UserProfiles)
+            float weight = (float) (idf(snap, term) * PERSONALIZATION_WEIGHT * profile.weight(p));
+            personalizeTerm(snap, scoring, term, weight, docs, scores, order);
+        }
+    }
 
-            PreparedStatement pstmt = conn.prepareStatement("UPDATE pages SET pagerank = ? WHERE url = ?");
-            for (Map.Entry<String, Double> entry : pageRank.entrySet()) {
-                pstmt.setDouble(1, entry.getValue());
-                pstmt.setString(2, entry.getKey());
-                pstmt.addBatch();
+    private void personalizeTerm(IndexSnapshot snap, Bm25.Scoring scoring, String term, float weight,
+                                 int[] docs, float[] scores, Integer[] order) {
+        for (Segment segment : snap.segments()) {
+            Segment.TermInfo info = segment.lookup(term);
+            if (info == null) continue;
+            TermScorer scorer = scoring.scorer(segment, info, weight);
+            for (int i : order) {
+                int doc = scorer.postings.advance(docs[i]);
+                if (doc == PostingsIterator.NO_MORE_DOCS) break;
+                if (doc == docs[i]) scores[i] += scorer.score();
             }
-            pstmt.executeBatch();
-            System.out.println("📊 PageRank computation complete.");
+        }
+    }
+
+    // Adds each term's title-field twin, so a match in either field counts
+    private static List<String[]> withTitles(List<String[]> groups) {
+        List<String[]> expanded = new ArrayList<>(groups.size());
+        for (String[] group : groups) {
+            String[] both = Arrays.copyOf(group, group.length * 2);
+            for (int i = 0; i < group.length; i++) both[group.length + i] = Segment.titleTerm(group[i]);
+            expanded.add(both);
+        }
+        return expanded;
+    }
+
+    private static List<String> withTitles(Collection<String> terms) {
+        List<String> expanded = new ArrayList<>(terms);
+        for (String term : terms) expanded.add(Segment.titleTerm(term));
+        return expanded;
+    }
+
+    // Every match (printing is left to the caller, see printResults)
+    public List<String> search(String query, String userId, String domainFilter, String afterDate) {
+        UserProfile profile = userId != null ? profiles.get(userId) : UserProfile.EMPTY;
+        List<SearchResult> results = search(query, Integer.MAX_VALUE,
+                new SearchFilters(domainFilter, afterDate), profile);
+        List<String> urls = new ArrayList<>(results.size());
+        for (SearchResult result : results) urls.add(result.url());
+        return urls;
+    }
+
+    // Prints results with highlighted snippets; reads each page, so keep it off the query path
+    public void printResults(String query, List<SearchResult> results) {
+        List<String> terms = queryTerms(query);
+        for (SearchResult result : results) {
+            String snippet = snippet(terms, result.docId(), "\u001B[1m", "\u001B[0m");
+            System.out.println("🔗 " + result.url());
+            System.out.println("📝 " + snippet);
+            System.out.println();
+        }
+    }
+
+    // Rank pages by the link graph and reload the boost used at query time
+    public void computePageRank() {
+        try {
+            // 1. Links between crawled pages, as a compressed adjacency over int ids
+            long start = System.nanoTime();
+            LinkGraph graph = LinkGraph.load();
+            long loaded = (System.nanoTime() - start) / 1_000_000;
+
+            // 2. Parallel power iterations until the ranks settle
+            PageRank.Result result = PageRank.compute(graph);
+
+            // 3. Write back in bounded batches and refresh the in-memory boost
+            PageRank.save(graph, result.ranks());
+            refreshMetadata();
+            System.out.printf("📊 PageRank: %d pages, %d links, %d iterations (L1 change %.2e); "
+                    + "graph loaded in %d ms, ranked in %d ms.%n", graph.nodeCount(), graph.edgeCount(),
+                    result.iterations(), result.delta(), loaded, result.millis());
         } catch (Exception e) {
             e.printStackTrace();
         }
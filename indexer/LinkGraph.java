@@ -0,0 +1,118 @@
+package indexer;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import utils.Database;
+
+// The crawled link graph in compressed sparse row form, over dense node numbers
+// (node i is page pageId(i)). Each node keeps its incoming edges, for pull-style
+// PageRank: the sources of node v are sources[inStarts[v] .. inStarts[v + 1]).
+// Only links between crawled pages are edges; repeats and self-links are dropped,
+// so out-degrees count exactly the edges that carry rank.
+public final class LinkGraph {
+    private final int[] pageIds;
+    private final int[] inStarts;
+    private final int[] sources;
+    private final int[] outDegrees;
+
+    private LinkGraph(int[] pageIds, int[] inStarts, int[] sources, int[] outDegrees) {
+        this.pageIds = pageIds;
+        this.inStarts = inStarts;
+        this.sources = sources;
+        this.outDegrees = outDegrees;
+    }
+
+    // from[i] -> to[i] for i < edgeCount, as node numbers; edges must already be distinct
+    static LinkGraph fromEdges(int[] pageIds, int[] from, int[] to, int edgeCount) {
+        int n = pageIds.length;
+        int[] outDegrees = new int[n];
+        int[] inStarts = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            outDegrees[from[e]]++;
+            inStarts[to[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) inStarts[v + 1] += inStarts[v];
+
+        // Counting sort by target; sources of each node stay in edge order
+        int[] fill = Arrays.copyOf(inStarts, n);
+        int[] sources = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) sources[fill[to[e]]++] = from[e];
+        return new LinkGraph(pageIds, inStarts, sources, outDegrees);
+    }
+
+    // Pages first (their url ids resolve through the urls index), then the edge table
+    // in primary-key order: two streams of ints, no per-page strings or collections
+    public static LinkGraph load() throws SQLException {
+        return Database.read(db -> {
+            // 1. Node per page; nodeOf maps a url id to its node, or -1 for urls never crawled
+            int maxUrlId;
+            try (ResultSet rs = db.prepare("SELECT MAX(id) FROM urls").executeQuery()) {
+                maxUrlId = rs.next() ? rs.getInt(1) : 0;
+            }
+            int[] nodeOf = new int[maxUrlId + 1];
+            Arrays.fill(nodeOf, -1);
+            int[] pageIds = new int[1024];
+            int n = 0;
+            String pagesSql = "SELECT p.id, u.id FROM pages p LEFT JOIN urls u ON u.url = p.url ORDER BY p.id";
+            try (ResultSet rs = db.prepare(pagesSql).executeQuery()) {
+                while (rs.next()) {
+                    if (n == pageIds.length) pageIds = Arrays.copyOf(pageIds, n * 2);
+                    pageIds[n] = rs.getInt(1);
+                    int urlId = rs.getInt(2);  // 0 (never a url id) when the url has no urls row
+                    if (urlId > 0 && urlId <= maxUrlId) nodeOf[urlId] = n;
+                    n++;
+                }
+            }
+            pageIds = Arrays.copyOf(pageIds, n);
+
+            // 2. Edges between crawled pages; the primary key already makes them distinct
+            int[] from = new int[1024];
+            int[] to = new int[1024];
+            int edges = 0;
+            try (ResultSet rs = db.prepare("SELECT from_id, to_id FROM links").executeQuery()) {
+                while (rs.next()) {
+                    int fromId = rs.getInt(1), toId = rs.getInt(2);
+                    if (fromId > maxUrlId || toId > maxUrlId) continue;  // added after step 1
+                    int source = nodeOf[fromId], target = nodeOf[toId];
+                    if (source < 0 || target < 0 || source == target) continue;
+                    if (edges == from.length) {
+                        from = Arrays.copyOf(from, edges * 2);
+                        to = Arrays.copyOf(to, edges * 2);
+                    }
+                    from[edges] = source;
+                    to[edges++] = target;
+                }
+            }
+            return fromEdges(pageIds, from, to, edges);
+        });
+    }
+
+    public int nodeCount() {
+        return pageIds.length;
+    }
+
+    public int edgeCount() {
+        return sources.length;
+    }
+
+    public int pageId(int node) {
+        return pageIds[node];
+    }
+
+    int outDegree(int node) {
+        return outDegrees[node];
+    }
+
+    int inStart(int node) {
+        return inStarts[node];
+    }
+
+    int inEnd(int node) {
+        return inStarts[node + 1];
+    }
+
+    int source(int edge) {
+        return sources[edge];
+    }
+}
@@ -0,0 +1,96 @@
+package indexer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Document-at-a-time top-k scoring with MaxScore pruning. Each term's postings get
+// an upper bound (its BM25 score at maxTf and minNorm, from the segment dictionary).
+// Terms are sorted by bound, and once the k-th best score exceeds the combined bound
+// of the weakest terms, those become "non-essential": they no longer produce
+// candidates and are only advanced (via skip data) to docs the essential terms
+// already matched.
+// Postings that cannot lift a doc into the top k are never decoded.
+final class MaxScoreSearcher {
+    private MaxScoreSearcher() {}
+
+    private static final class Clause {
+        final TermScorer scorer;
+        final PostingsIterator postings;
+        final float maxScore;
+
+        Clause(TermScorer scorer) {
+            this.scorer = scorer;
+            this.postings = scorer.postings;
+            this.maxScore = scorer.maxScore();
+        }
+    }
+
+    // terms[i] is scored with BM25 times weights[i]; each doc then gets its PageRank boost * boostWeight.
+    // allowed (may be null) restricts the docs that can be returned.
+    static TopDocs search(IndexSnapshot snap, Bm25.Scoring scoring, String[] terms, float[] weights,
+                          BitSet allowed, float boostWeight, int k) {
+        TopDocs top = new TopDocs(k);
+        DocMetadata metadata = snap.metadata();
+        float boostBound = metadata.maxPageRankBoost() * boostWeight;
+
+        for (Segment segment : snap.segments()) {
+            List<Clause> found = new ArrayList<>();
+            for (int i = 0; i < terms.length; i++) {
+                Segment.TermInfo info = segment.lookup(terms[i]);
+                if (info != null) found.add(new Clause(scoring.scorer(segment, info, weights[i])));
+            }
+            if (found.isEmpty()) continue;
+            found.sort((a, b) -> Float.compare(a.maxScore, b.maxScore));
+            Clause[] clauses = found.toArray(new Clause[0]);
+            int n = clauses.length;
+
+            // bounds[i]: best possible score from clauses 0..i alone
+            float[] bounds = new float[n];
+            float sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += clauses[i].maxScore;
+                bounds[i] = sum;
+                clauses[i].postings.nextDoc();
+            }
+
+            int firstEssential = 0;
+            while (firstEssential < n && bounds[firstEssential] + boostBound <= top.threshold()) firstEssential++;
+
+            while (firstEssential < n) {
+                int doc = PostingsIterator.NO_MORE_DOCS;
+                for (int i = firstEssential; i < n; i++) doc = Math.min(doc, clauses[i].postings.docId());
+                if (doc == PostingsIterator.NO_MORE_DOCS) break;
+
+                float score = 0;
+                for (int i = firstEssential; i < n; i++) {
+                    PostingsIterator it = clauses[i].postings;
+                    if (it.docId() == doc) {
+                        score += clauses[i].scorer.score();
+                        it.nextDoc();
+                    }
+                }
+                if (snap.isDeleted(doc) || (allowed != null && !allowed.get(doc))) continue;
+
+                boolean competitive = true;
+                for (int i = firstEssential - 1; i >= 0; i--) {
+                    if (score + bounds[i] + boostBound <= top.threshold()) {
+                        competitive = false;
+                        break;
+                    }
+                    PostingsIterator it = clauses[i].postings;
+                    if (it.advance(doc) == doc) score += clauses[i].scorer.score();
+                }
+                if (!competitive) continue;
+
+                score += metadata.pageRankBoost(doc) * boostWeight;
+                if (top.insert(doc, score)) {
+                    while (firstEssential < n && bounds[firstEssential] + boostBound <= top.threshold()) {
+                        firstEssential++;
+                    }
+                }
+            }
+        }
+        return top;
+    }
+}
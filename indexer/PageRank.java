@@ -0,0 +1,105 @@
+package indexer;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import utils.Database;
+
+// Power-iteration PageRank over a LinkGraph. Each iteration is a parallel "pull":
+// every node sums rank / outDegree over its incoming edges, reading only the
+// previous iteration's arrays, so blocks of nodes need no locking. Rank held by
+// pages without outgoing edges (dangling pages) is spread evenly over all pages,
+// so the ranks always sum to 1. Iterations stop once the L1 change drops below
+// the tolerance.
+public final class PageRank {
+    public static final double DEFAULT_DAMPING = 0.85;
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    private static final int BLOCK_SIZE = 4096;        // nodes per parallel task
+    private static final int WRITE_BATCH_SIZE = 10_000;  // rows per UPDATE transaction
+
+    private PageRank() {}
+
+    // ranks[node] sums to 1; delta is the L1 change of the last iteration
+    public record Result(double[] ranks, int iterations, double delta, long millis) {}
+
+    public static Result compute(LinkGraph graph) {
+        return compute(graph, DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    public static Result compute(LinkGraph graph, double damping, double tolerance, int maxIterations) {
+        long start = System.nanoTime();
+        int n = graph.nodeCount();
+        if (n == 0) return new Result(new double[0], 0, 0, 0);
+
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        double[] share = new double[n];  // rank / outDegree, what each node passes along one edge
+        Arrays.fill(rank, 1.0 / n);
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+        int iterations = 0;
+        double delta = Double.MAX_VALUE;
+        while (iterations < maxIterations && delta >= tolerance) {
+            // 1. Per-edge shares and the total rank of dangling pages
+            double[] current = rank;
+            double dangling = IntStream.range(0, blocks).parallel().mapToDouble(block -> {
+                double sum = 0;
+                for (int u = block * BLOCK_SIZE, end = Math.min(n, u + BLOCK_SIZE); u < end; u++) {
+                    int degree = graph.outDegree(u);
+                    if (degree == 0) {
+                        share[u] = 0;
+                        sum += current[u];
+                    } else {
+                        share[u] = current[u] / degree;
+                    }
+                }
+                return sum;
+            }).sum();
+
+            // 2. Pull shares along incoming edges; teleport and dangling rank are the same for everyone
+            double base = (1 - damping) / n + damping * dangling / n;
+            double[] updated = next;
+            delta = IntStream.range(0, blocks).parallel().mapToDouble(block -> {
+                double change = 0;
+                for (int v = block * BLOCK_SIZE, end = Math.min(n, v + BLOCK_SIZE); v < end; v++) {
+                    double sum = 0;
+                    for (int e = graph.inStart(v), stop = graph.inEnd(v); e < stop; e++) {
+                        sum += share[graph.source(e)];
+                    }
+                    updated[v] = base + damping * sum;
+                    change += Math.abs(updated[v] - current[v]);
+                }
+                return change;
+            }).sum();
+
+            next = rank;
+            rank = updated;
+            iterations++;
+        }
+        return new Result(rank, iterations, delta, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Stores rank * nodeCount, so an average page scores 1.0 (the pages.pagerank
+    // default) whatever the size of the crawl. Committed in bounded transactions.
+    public static void save(LinkGraph graph, double[] ranks) throws SQLException {
+        int n = graph.nodeCount();
+        for (int from = 0; from < n; from += WRITE_BATCH_SIZE) {
+            int first = from, last = Math.min(n, from + WRITE_BATCH_SIZE);
+            Database.transaction(db -> {
+                PreparedStatement update = db.prepare("UPDATE pages SET pagerank = ? WHERE id = ?");
+                try {
+                    for (int node = first; node < last; node++) {
+                        update.setDouble(1, ranks[node] * n);
+                        update.setInt(2, graph.pageId(node));
+                        update.addBatch();
+                    }
+                    return update.executeBatch();
+                } finally {
+                    update.clearBatch();
+                }
+            });
+        }
+    }
+}
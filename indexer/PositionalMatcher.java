@@ -0,0 +1,149 @@
+package indexer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Queries over token positions: exact phrases ("new york") and a proximity
+// boost for results whose query terms appear close together. Positions are
+// decoded lazily, only for docs that already contain every phrase term (phrases)
+// or for the candidate results (proximity), never for whole postings lists.
+final class PositionalMatcher {
+    private PositionalMatcher() {}
+
+    // Docs containing every phrase, or null when there are no phrases. A phrase
+    // matches within the body or within the title; the fields are positioned
+    // separately, so it never runs from the end of one into the other. Segments
+    // written without positions fall back to requiring all of a phrase's terms.
+    static BitSet phraseFilter(IndexSnapshot snap, List<String[]> phrases) {
+        if (phrases.isEmpty()) return null;
+        BitSet result = null;
+        for (String[] phrase : phrases) {
+            String[] inTitle = new String[phrase.length];
+            for (int i = 0; i < phrase.length; i++) inTitle[i] = Segment.titleTerm(phrase[i]);
+            BitSet matches = new BitSet();
+            for (Segment segment : snap.segments()) {
+                matchPhrase(segment, phrase, matches);
+                matchPhrase(segment, inTitle, matches);
+            }
+            if (result == null) result = matches;
+            else result.and(matches);
+        }
+        return result;
+    }
+
+    private static void matchPhrase(Segment segment, String[] phrase, BitSet into) {
+        int n = phrase.length;
+        PostingsIterator[] its = new PostingsIterator[n];
+        for (int i = 0; i < n; i++) {
+            Segment.TermInfo info = segment.lookup(phrase[i]);
+            if (info == null) return;  // some term is missing from this segment
+            its[i] = segment.postings(info);
+        }
+        // 1. Rarest term leads the intersection; the others are advanced to its docs
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(its[a].termInfo().df(), its[b].termInfo().df()));
+        PostingsIterator lead = its[order[0]];
+
+        int[][] positions = new int[n][16];
+        int[] counts = new int[n];
+        int doc = lead.nextDoc();
+        while (doc != PostingsIterator.NO_MORE_DOCS) {
+            int next = doc;
+            for (int i = 1; i < n && next == doc; i++) next = its[order[i]].advance(doc);
+            if (next == PostingsIterator.NO_MORE_DOCS) return;
+            if (next != doc) {
+                doc = lead.advance(next);
+                continue;
+            }
+            // 2. Every term is in the doc; check for consecutive positions
+            if (!segment.hasPositions()) {
+                into.set(doc);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    if (positions[i].length < its[i].freq()) positions[i] = new int[its[i].freq()];
+                    counts[i] = its[i].positions(positions[i]);
+                }
+                if (consecutive(positions, counts, order[0])) into.set(doc);
+            }
+            doc = lead.nextDoc();
+        }
+    }
+
+    // Is there a start s with term i at position s + i for every i?
+    private static boolean consecutive(int[][] positions, int[] counts, int anchor) {
+        for (int a = 0; a < counts[anchor]; a++) {
+            int start = positions[anchor][a] - anchor;
+            if (start < 0) continue;
+            boolean all = true;
+            for (int i = 0; i < counts.length && all; i++) {
+                if (i != anchor) all = Arrays.binarySearch(positions[i], 0, counts[i], start + i) >= 0;
+            }
+            if (all) return true;
+        }
+        return false;
+    }
+
+    // Adds weight * (sum of idf of the matched terms) * m / span to each candidate,
+    // where span is the shortest window holding all m >= 2 query terms the doc
+    // contains (so adjacent terms give the full boost). Docs in segments without
+    // positions get nothing.
+    static void proximityBoost(IndexSnapshot snap, String[] terms, float[] idfs, float weight,
+                               int[] docs, float[] scores) {
+        if (terms.length < 2 || docs.length == 0) return;
+        Integer[] order = new Integer[docs.length];
+        for (int i = 0; i < docs.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(docs[a], docs[b]));  // advance() needs ascending targets
+
+        int[] buffer = new int[16];
+        long[] tokens = new long[64];
+        for (Segment segment : snap.segments()) {
+            if (!segment.hasPositions()) continue;
+            PostingsIterator[] its = new PostingsIterator[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                Segment.TermInfo info = segment.lookup(terms[t]);
+                if (info != null) its[t] = segment.postings(info);
+            }
+            for (int i : order) {
+                int doc = docs[i];
+                if (!segment.contains(doc)) continue;
+                // 1. Merge the candidate's positions of every query term, tagged by term
+                int size = 0;
+                int matched = 0;
+                float idfSum = 0;
+                for (int t = 0; t < terms.length; t++) {
+                    if (its[t] == null || its[t].advance(doc) != doc) continue;
+                    int freq = its[t].freq();
+                    if (buffer.length < freq) buffer = new int[freq];
+                    int count = its[t].positions(buffer);
+                    if (tokens.length < size + count) tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, size + count));
+                    for (int p = 0; p < count; p++) tokens[size++] = ((long) buffer[p] << 32) | t;
+                    matched++;
+                    idfSum += idfs[t];
+                }
+                if (matched < 2) continue;
+                Arrays.sort(tokens, 0, size);
+
+                // 2. Shortest window covering every matched term
+                int span = minimalSpan(tokens, size, terms.length, matched);
+                scores[i] += weight * idfSum * matched / span;
+            }
+        }
+    }
+
+    private static int minimalSpan(long[] tokens, int size, int termCount, int matched) {
+        int[] inWindow = new int[termCount];
+        int distinct = 0;
+        int best = Integer.MAX_VALUE;
+        for (int first = 0, last = 0; last < size; last++) {
+            if (inWindow[(int) tokens[last]]++ == 0) distinct++;
+            while (distinct == matched) {
+                best = Math.min(best, (int) (tokens[last] >>> 32) - (int) (tokens[first] >>> 32) + 1);
+                if (--inWindow[(int) tokens[first]] == 0) distinct--;
+                first++;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,143 @@
+package indexer;
+
+import java.nio.ByteBuffer;
+
+// Cursor over one term's postings inside a mapped segment. Uses only absolute
+// reads on the shared buffer, so any number of iterators can run concurrently.
+// Positions are only decoded when positions() is called for the current doc.
+public class PostingsIterator {
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final ByteBuffer buf;
+    private final Segment.TermInfo info;
+    private int pos;           // absolute byte position of the next posting
+    private int read = 0;      // postings consumed so far
+    private int doc = -1;
+    private int freq = 0;
+
+    // Positions region cursor: the entry of posting `posIndex` starts at `posEntry`
+    private int posIndex = 0;
+    private int posEntry;
+    private int varIntEnd;  // set by readVarIntAt
+
+    PostingsIterator(ByteBuffer buf, Segment.TermInfo info) {
+        this.buf = buf;
+        this.info = info;
+        this.pos = info.postingsOffset();
+        this.posEntry = info.positionsOffset();
+    }
+
+    public Segment.TermInfo termInfo() {
+        return info;
+    }
+
+    public int docId() {
+        return doc;
+    }
+
+    // Term frequency of the current posting
+    public int freq() {
+        return freq;
+    }
+
+    public int nextDoc() {
+        if (read >= info.df()) return doc = NO_MORE_DOCS;
+        int delta = readVarInt();
+        doc = (doc < 0 ? 0 : doc) + delta;
+        freq = readVarInt();
+        read++;
+        return doc;
+    }
+
+    private int readVarInt() {
+        int value = 0, shift = 0, b;
+        do {
+            b = buf.get(pos++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // Move to the first doc >= target, jumping whole blocks via the skip entries.
+    // The target block is found by galloping (1, 2, 4, ... blocks ahead) and then a
+    // binary search, so far jumps cost O(log distance) skip entries, short ones O(1).
+    public int advance(int target) {
+        if (doc >= target) return doc;
+        if (info.skipOffset() >= 0) {
+            int blocks = (info.df() + Segment.BLOCK_SIZE - 1) / Segment.BLOCK_SIZE;
+            int currentBlock = Math.max(0, read - 1) / Segment.BLOCK_SIZE;
+            int low = currentBlock, high = currentBlock;
+            for (int step = 1; high < blocks - 1 && lastDoc(high) < target; step <<= 1) {
+                low = high + 1;
+                high = Math.min(blocks - 1, high + step);
+            }
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lastDoc(mid) < target) low = mid + 1;
+                else high = mid;
+            }
+            int block = low;
+            if (block > currentBlock) {
+                doc = lastDoc(block - 1);
+                pos = info.postingsOffset() + buf.getInt(skipEntry(block) + 4);
+                read = block * Segment.BLOCK_SIZE;
+            }
+        }
+        while (nextDoc() < target) {
+            // linear scan within the block
+        }
+        return doc;
+    }
+
+    private int lastDoc(int block) {
+        return buf.getInt(skipEntry(block));
+    }
+
+    private int skipEntry(int block) {
+        return info.skipOffset() + block * Segment.SKIP_ENTRY_BYTES;
+    }
+
+    // Decode the current doc's positions into `into` (which must hold freq() ints);
+    // returns the count, or 0 if the segment has no positions
+    public int positions(int[] into) {
+        if (info.positionsOffset() < 0 || doc == NO_MORE_DOCS || read == 0) return 0;
+        int target = read - 1;
+        // Entries are length-prefixed: jump to the block start via the skip data if the
+        // cursor is behind, then hop entry to entry without decoding positions
+        if (posIndex > target || target - posIndex >= Segment.BLOCK_SIZE) {
+            int block = target / Segment.BLOCK_SIZE;
+            posIndex = block * Segment.BLOCK_SIZE;
+            posEntry = info.positionsOffset() + (block == 0 ? 0 : buf.getInt(skipEntry(block) + 8));
+        }
+        int p = posEntry;
+        while (posIndex < target) {
+            int length = readVarIntAt(p);
+            p = varIntEnd + length;
+            posIndex++;
+        }
+        posEntry = p;
+
+        int length = readVarIntAt(p);
+        int at = varIntEnd;
+        int end = at + length;
+        int count = 0, position = 0;
+        while (at < end) {
+            position += readVarIntAt(at);
+            at = varIntEnd;
+            into[count++] = position;
+        }
+        return count;
+    }
+
+    private int readVarIntAt(int at) {
+        int value = 0, shift = 0, b;
+        do {
+            b = buf.get(at++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        varIntEnd = at;
+        return value;
+    }
+}
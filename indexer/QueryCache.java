@@ -0,0 +1,115 @@
+package indexer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bounded LRU cache of base (non-personalized) top-k results, keyed on the
+// normalized query, filters and k. Each entry remembers the IndexSnapshot it
+// was computed on and is dropped as soon as a different snapshot is current,
+// so rebuilds, delta segments, merges and PageRank refreshes all invalidate it.
+public class QueryCache {
+    private final int maxEntries;
+    private final long ttlNanos;  // 0 = entries only leave by eviction/invalidation
+
+    private final Map<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    record Hits(int[] docs, float[] scores) {}
+
+    private record Entry(IndexSnapshot snapshot, long createdNanos, Hits hits) {}
+
+    // ttlMillis > 0 also expires entries that old, e.g. to bound how long a popular
+    // result list stays on the heap between index updates
+    public QueryCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Invalid query cache size " + maxEntries + " or TTL " + ttlMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= QueryCache.this.maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // Cache key: query words in sorted order (scoring ignores word order), filters and k
+    static String key(List<String> words, SearchFilters filters, int k) {
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        return String.join(" ", sorted) + "\u0000" + filters.site() + "\u0000" + filters.after() + "\u0000" + k;
+    }
+
+    synchronized Hits get(String key, IndexSnapshot snapshot) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.snapshot() != snapshot) {
+            entries.remove(key);
+            invalidations++;
+            misses++;
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.createdNanos() > ttlNanos) {
+            entries.remove(key);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.hits();
+    }
+
+    synchronized void put(String key, IndexSnapshot snapshot, Hits result) {
+        if (maxEntries <= 0) return;
+        entries.put(key, new Entry(snapshot, System.nanoTime(), result));
+    }
+
+    // Called when a new snapshot is published
+    synchronized void invalidateAll() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryCache[size=%d/%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, invalidations=%d]",
+                entries.size(), maxEntries, hits, misses, hitRate() * 100, evictions, invalidations);
+    }
+}
@@ -0,0 +1,159 @@
+package indexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Search box syntax:
+//   w1 w2            both terms (AND is the default; the AND keyword is optional)
+//   w1 OR w2         either term; OR binds tighter than the implicit AND and
+//                    only joins single terms (a phrase on either side stays required)
+//   "w1 w2"          phrase: its terms must appear side by side
+//   -w1, NOT w1      exclude pages with the term (or phrase)
+//   site:host        only pages whose domain contains host
+//   after:date       only pages crawled on or after date (e.g. 2024-01-31)
+// A word the analyzer splits into several terms ("e-mail") is treated as a phrase.
+final class QueryParser {
+    private QueryParser() {}
+
+    // groups: AND of ORs, each group a list of alternative terms (one term = required).
+    // words: every positive term occurrence, for term weights.
+    record Query(List<String[]> groups, List<String[]> phrases, List<String> excludedTerms,
+                 List<String[]> excludedPhrases, List<String> words, String site, String after) {
+
+        // Needs the boolean searcher: several required groups, exclusions, or an OR that a
+        // required term absorbed ("a OR b a" is just "a", so b alone must not match)
+        boolean isConjunction() {
+            if (groups.size() > 1 || !excludedTerms.isEmpty() || !excludedPhrases.isEmpty()) return true;
+            Set<String> grouped = groups.isEmpty() ? Set.of() : new HashSet<>(Arrays.asList(groups.get(0)));
+            return !grouped.containsAll(words);
+        }
+
+        // Canonical clauses: the same query in any order yields the same sorted list
+        List<String> cacheKeyParts() {
+            List<String> parts = new ArrayList<>(words);
+            for (String[] group : groups) parts.add("+" + String.join("|", group));
+            for (String[] phrase : phrases) parts.add("\"" + String.join(" ", phrase) + "\"");
+            for (String term : excludedTerms) parts.add("-" + term);
+            for (String[] phrase : excludedPhrases) parts.add("-\"" + String.join(" ", phrase) + "\"");
+            return parts;
+        }
+    }
+
+    static Query parse(Analyzer analyzer, String query) {
+        List<String[]> groups = new ArrayList<>();
+        List<String[]> phrases = new ArrayList<>();
+        List<String> excludedTerms = new ArrayList<>();
+        List<String[]> excludedPhrases = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        String site = null, after = null;
+
+        boolean negate = false, or = false, lastPhrase = false;
+        for (String token : tokenize(query)) {
+            // 1. Operators apply to the next operand
+            if (token.equals("OR")) {
+                or = !groups.isEmpty() && !lastPhrase;
+                continue;
+            }
+            if (token.equals("AND")) continue;
+            if (token.equals("NOT")) {
+                negate = true;
+                continue;
+            }
+            if (token.startsWith("-") && token.length() > 1) {
+                negate = true;
+                token = token.substring(1);
+            }
+            // 2. Field operators
+            String lower = token.toLowerCase();
+            if (lower.startsWith("site:") && lower.length() > 5 && !negate) {
+                site = lower.substring(5);
+                or = false;
+                lastPhrase = false;
+                continue;
+            }
+            if (lower.startsWith("after:") && lower.length() > 6 && !negate) {
+                after = token.substring(6);
+                or = false;
+                lastPhrase = false;
+                continue;
+            }
+
+            // 3. Terms
+            boolean quoted = token.startsWith("\"");
+            String[] terms = analyzer.terms(quoted ? token.substring(1) : token).toArray(new String[0]);
+            if (terms.length == 0) {
+                negate = false;
+                continue;  // only stopwords or punctuation
+            }
+            if (negate) {
+                if (terms.length == 1) excludedTerms.add(terms[0]);
+                else excludedPhrases.add(terms);
+            } else {
+                words.addAll(Arrays.asList(terms));
+                if (or && terms.length == 1) {
+                    String[] last = groups.remove(groups.size() - 1);
+                    String[] merged = Arrays.copyOf(last, last.length + terms.length);
+                    System.arraycopy(terms, 0, merged, last.length, terms.length);
+                    groups.add(distinct(merged));
+                } else {
+                    for (String term : terms) groups.add(new String[] {term});
+                    if (terms.length > 1) phrases.add(terms);
+                }
+            }
+            lastPhrase = !negate && terms.length > 1;
+            negate = false;
+            or = false;
+        }
+        return new Query(simplify(groups), phrases, excludedTerms, excludedPhrases, words, site, after);
+    }
+
+    // Drops repeated groups and ORs containing a required term ("a (a OR b)" is just "a");
+    // a repeated term still adds weight through words
+    private static List<String[]> simplify(List<String[]> groups) {
+        Set<String> required = new HashSet<>();
+        for (String[] group : groups) {
+            if (group.length == 1) required.add(group[0]);
+        }
+        Set<String> seen = new HashSet<>();
+        List<String[]> simplified = new ArrayList<>();
+        for (String[] group : groups) {
+            if (group.length > 1 && Arrays.stream(group).anyMatch(required::contains)) continue;
+            if (seen.add(String.join("|", group))) simplified.add(group);
+        }
+        return simplified;
+    }
+
+    private static String[] distinct(String[] terms) {
+        return Arrays.stream(terms).distinct().toArray(String[]::new);
+    }
+
+    // Whitespace-separated words; "quoted text" is one token, kept with its opening
+    // quote. An unmatched quote runs to the end of the query.
+    private static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0, n = query.length();
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean negated = c == '-' && i + 1 < n && query.charAt(i + 1) == '"';
+            if (c == '"' || negated) {
+                int open = negated ? i + 1 : i;
+                int close = query.indexOf('"', open + 1);
+                int end = close < 0 ? n : close;
+                tokens.add((negated ? "-" : "") + "\"" + query.substring(open + 1, end));
+                i = close < 0 ? n : close + 1;
+                continue;
+            }
+            while (i < n && !Character.isWhitespace(query.charAt(i)) && query.charAt(i) != '"') i++;
+            tokens.add(query.substring(start, i));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,11 @@
+package indexer;
+
+// Optional restrictions for a search: `site` matches as a substring of the page's
+// domain, `after` drops pages crawled before that date. Null means no restriction.
+public record SearchFilters(String site, String after) {
+    public static final SearchFilters NONE = new SearchFilters(null, null);
+
+    public boolean isEmpty() {
+        return site == null && after == null;
+    }
+}
@@ -0,0 +1,4 @@
+package indexer;
+
+// One ranked hit returned by Indexer.search
+public record SearchResult(int docId, String url, float score) {}
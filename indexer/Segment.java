@@ -0,0 +1,251 @@
+package indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Read-only view of a segment file written by SegmentWriter. The file is memory
+// mapped; the term dictionary and doc table are binary searched in place, so
+// opening a segment costs the same no matter how large it is. Postings hold raw
+// term frequencies so scores can use global statistics across all segments, and
+// optionally each posting's token positions for phrase and proximity matching.
+// Page titles are a separate field: their terms are stored as titleTerm(term).
+// One-byte length norms per doc (see Bm25) are stored in doc table order, so a
+// shard's segment only pays for its own docs, not for the id range they span.
+public class Segment implements Closeable {
+    static final int MAGIC = 0x50534547;  // "PSEG"
+    static final int VERSION = 5;  // v4 adds the title field, length norms and minNorm; v5 stores norms per slot
+    static final int HEADER_BYTES = 80;
+    static final int DICT_ENTRY_BYTES = 44;
+    static final int SKIP_ENTRY_BYTES = 12;
+    static final int FLAG_POSITIONS = 1;
+    static final int DOC_ENTRY_BYTES = 20;
+    static final String TITLE_PREFIX = "title:";  // analyzer terms never contain ':'
+    static final int BLOCK_SIZE = 128;
+
+    private final Path path;
+    private final MappedByteBuffer buf;
+    private final int termCount;
+    private final int docCount;
+    private final int dictOffset;
+    private final int termBytesOffset;
+    private final int docTableOffset;
+    private final int docBytesOffset;
+    private final boolean hasPositions;
+    private final int firstDocId;
+    private final int normsOffset;
+    private final long totalLength;
+    private final long totalTitleLength;
+
+    // Dictionary entry for one term. maxTf and minNorm (the shortest field length among
+    // its docs) together bound the score of any posting in the list.
+    // positionsOffset is -1 when the segment was written without positions.
+    public record TermInfo(String term, int df, int maxTf, int minNorm, int postingsOffset, int skipOffset,
+                           int positionsOffset) {}
+
+    private Segment(Path path, MappedByteBuffer buf) throws IOException {
+        this.path = path;
+        this.buf = buf;
+        if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Unsupported segment version " + buf.getInt(4) + ": " + path);
+        }
+        this.termCount = buf.getInt(8);
+        this.docCount = buf.getInt(12);
+        this.dictOffset = (int) buf.getLong(16);
+        this.termBytesOffset = (int) buf.getLong(24);
+        this.docTableOffset = (int) buf.getLong(32);
+        this.docBytesOffset = (int) buf.getLong(40);
+        this.hasPositions = (buf.getInt(48) & FLAG_POSITIONS) != 0;
+        this.firstDocId = buf.getInt(52);
+        this.normsOffset = (int) buf.getLong(56);
+        this.totalLength = buf.getLong(64);
+        this.totalTitleLength = buf.getLong(72);
+    }
+
+    public static String titleTerm(String term) {
+        return TITLE_PREFIX + term;
+    }
+
+    public static boolean isTitleTerm(String term) {
+        return term.startsWith(TITLE_PREFIX);
+    }
+
+    public static Segment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public boolean hasPositions() {
+        return hasPositions;
+    }
+
+    // Body and title token counts summed over all docs, for average field lengths
+    public long totalLength() {
+        return totalLength;
+    }
+
+    public long totalTitleLength() {
+        return totalTitleLength;
+    }
+
+    // Length norm byte of the doc's body or title; the doc must be in this segment
+    int norm(int docId, boolean title) {
+        return normAt(findDoc(docId), title);
+    }
+
+    int normAt(int slot, boolean title) {
+        return buf.get(normsOffset + slot * 2 + (title ? 1 : 0)) & 0xFF;
+    }
+
+    // Slot of a doc in this segment, searching forward from `from`, a slot at or before
+    // it. Postings visit docs in ascending order, so a scorer gallops on from its last
+    // slot; without gaps in the ids the slot is found directly.
+    int slotFrom(int from, int docId) {
+        int direct = docId - firstDocId;
+        if (direct >= from && direct < docCount && docIdAt(direct) == docId) return direct;
+        int low = from, high = from;
+        for (int step = 1; high < docCount - 1 && docIdAt(high) < docId; step <<= 1) {
+            low = high + 1;
+            high = Math.min(docCount - 1, high + step);
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (docIdAt(mid) < docId) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public TermInfo lookup(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareTerm(mid, key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return termAt(mid, term);
+        }
+        return null;
+    }
+
+    public PostingsIterator postings(TermInfo info) {
+        return new PostingsIterator(buf, info);
+    }
+
+    // All terms in dictionary order
+    public Iterator<TermInfo> terms() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            public boolean hasNext() {
+                return next < termCount;
+            }
+
+            public TermInfo next() {
+                if (next >= termCount) throw new NoSuchElementException();
+                return termAt(next++, null);
+            }
+        };
+    }
+
+    // URL for a doc id, or null if the document is not in this segment
+    public String url(int docId) {
+        int slot = findDoc(docId);
+        return slot < 0 ? null : urlAt(slot);
+    }
+
+    // Token count recorded for a doc id at index time, or 0 if unknown
+    public int docLength(int docId) {
+        int slot = findDoc(docId);
+        return slot < 0 ? 0 : docLengthAt(slot);
+    }
+
+    public boolean contains(int docId) {
+        return findDoc(docId) >= 0;
+    }
+
+    // Doc table access by position (0 <= slot < docCount), in doc id order
+    public int docIdAt(int slot) {
+        return buf.getInt(docTableOffset + slot * DOC_ENTRY_BYTES);
+    }
+
+    public int docLengthAt(int slot) {
+        return buf.getInt(docTableOffset + slot * DOC_ENTRY_BYTES + 4);
+    }
+
+    public int titleLengthAt(int slot) {
+        return buf.getInt(docTableOffset + slot * DOC_ENTRY_BYTES + 8);
+    }
+
+    public String urlAt(int slot) {
+        int entry = docTableOffset + slot * DOC_ENTRY_BYTES;
+        return readUtf8(docBytesOffset + buf.getInt(entry + 12), buf.getInt(entry + 16));
+    }
+
+    private int findDoc(int docId) {
+        int lo = 0, hi = docCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = docIdAt(mid);
+            if (id < docId) lo = mid + 1;
+            else if (id > docId) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private TermInfo termAt(int slot, String knownTerm) {
+        int entry = dictOffset + slot * DICT_ENTRY_BYTES;
+        String term = knownTerm != null ? knownTerm
+                : readUtf8(termBytesOffset + buf.getInt(entry), buf.getInt(entry + 4));
+        return new TermInfo(term, buf.getInt(entry + 8), buf.getInt(entry + 12), buf.getInt(entry + 40),
+                (int) buf.getLong(entry + 16), (int) buf.getLong(entry + 24), (int) buf.getLong(entry + 32));
+    }
+
+    // Unsigned byte comparison of the term in `slot` against key
+    private int compareTerm(int slot, byte[] key) {
+        int entry = dictOffset + slot * DICT_ENTRY_BYTES;
+        int start = termBytesOffset + buf.getInt(entry);
+        int length = buf.getInt(entry + 4);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(buf.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String readUtf8(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        // Mapped buffers are released by the GC; nothing else holds the file open
+    }
+}
@@ -0,0 +1,173 @@
+package indexer;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import utils.DBManager;
+import utils.Database;
+
+// One-off migration for databases indexed before segment files existed: copies
+// the rows of the legacy inverted_index table into a segment and publishes it as
+// the current index generation, so no full reindex is needed. The legacy rows
+// hold tf-idf scores; term frequencies are recovered by dividing the idf back out.
+// They have no doc lengths or title field, so those are recomputed from pages:
+// each body is only counted, each title analyzed, and the title terms are merged
+// into the legacy term stream. Length normalization and title boosts then work as
+// on a freshly built index.
+//
+//   java indexer.SegmentConverter [path/to/searchengine.db]
+public class SegmentConverter {
+    public static void main(String[] args) {
+        if (args.length > 0) Database.configure(args[0]);
+        DBManager.initDB();
+        try {
+            convert();
+        } catch (IOException | SQLException e) {
+            System.out.println("❌ Conversion failed: " + e.getMessage());
+        } finally {
+            Database.close();
+        }
+    }
+
+    public static void convert() throws IOException, SQLException {
+        long start = System.nanoTime();
+        String signature = IndexStore.pagesSignature();
+        long generation = IndexStore.nextGeneration();
+        String name = IndexStore.segmentName(generation);
+
+        Analyzer analyzer = Analyzer.standard();
+        long[] postings = {0};
+        int[] maxDocId = {0};
+        TreeMap<String, TitlePostings> titleTerms = new TreeMap<>(Indexer::compareUtf8);
+        SegmentWriter writer = new SegmentWriter(IndexStore.directory().resolve(name));
+        try {
+            Database.read(db -> {
+                // idx_inverted_term lets SQLite stream this in term order without sorting
+                String sql = "SELECT i.term, p.id, i.score FROM inverted_index i "
+                           + "JOIN pages p ON p.url = i.url ORDER BY i.term, p.id";
+                int totalDocs;
+                try (ResultSet rs = db.prepare("SELECT COUNT(*) FROM pages").executeQuery()) {
+                    totalDocs = rs.next() ? rs.getInt(1) : 0;
+                }
+                String pagesSql = "SELECT id, url, title, content FROM pages ORDER BY id";
+                try (ResultSet rs = db.prepare(pagesSql).executeQuery()) {
+                    while (rs.next()) {
+                        int docId = rs.getInt(1);
+                        List<String> title = analyzer.terms(rs.getString(3) != null ? rs.getString(3) : "");
+                        Map<String, Integer> titleCounts = new HashMap<>();
+                        for (String term : title) titleCounts.merge(Segment.titleTerm(term), 1, Integer::sum);
+                        titleCounts.forEach((term, tf) ->
+                                titleTerms.computeIfAbsent(term, t -> new TitlePostings()).add(docId, tf));
+                        int length = tokenCount(analyzer, rs.getString(4));
+                        writer.addDocument(docId, length, title.size(), rs.getString(2));
+                        maxDocId[0] = docId;
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Segment write failed: " + e.getMessage(), e);
+                }
+                Iterator<Map.Entry<String, TitlePostings>> titles = titleTerms.entrySet().iterator();
+                Map.Entry<String, TitlePostings> nextTitle = titles.hasNext() ? titles.next() : null;
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    String current = null;
+                    int count = 0;
+                    int[] docIds = new int[16];
+                    double[] scores = new double[16];
+                    while (true) {
+                        boolean more = rs.next();
+                        String term = more ? rs.getString(1) : null;
+                        if (current != null && !current.equals(term)) {
+                            // Title terms sorting before this one go first
+                            while (nextTitle != null && Indexer.compareUtf8(nextTitle.getKey(), current) < 0) {
+                                postings[0] += nextTitle.getValue().write(writer, nextTitle.getKey());
+                                nextTitle = titles.hasNext() ? titles.next() : null;
+                            }
+                            writeTerm(writer, current, docIds, scores, count, totalDocs);
+                            postings[0] += count;
+                            count = 0;
+                        }
+                        if (!more) break;
+                        current = term;
+                        if (count == docIds.length) {
+                            docIds = Arrays.copyOf(docIds, count * 2);
+                            scores = Arrays.copyOf(scores, count * 2);
+                        }
+                        docIds[count] = rs.getInt(2);
+                        scores[count] = rs.getDouble(3);
+                        count++;
+                    }
+                    for (; nextTitle != null; nextTitle = titles.hasNext() ? titles.next() : null) {
+                        postings[0] += nextTitle.getValue().write(writer, nextTitle.getKey());
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Segment write failed: " + e.getMessage(), e);
+                }
+                return null;
+            });
+            writer.close();
+        } catch (IOException | SQLException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        IndexStore.commit(generation, signature, List.of(name), maxDocId[0], 1, analyzer.name(), db -> {
+            db.execute("DELETE FROM index_docs");
+            db.execute("DELETE FROM index_tombstones");
+            PreparedStatement docStmt = db.prepare(
+                "INSERT INTO index_docs (doc_id, url, snippet) "
+              + "SELECT id, url, substr(content, 1, 160) FROM pages"
+            );
+            return docStmt.executeUpdate();
+        });
+        IndexStore.deleteSegmentsExcept(List.of(name));
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("✅ Converted %d postings from inverted_index into %s in %.2fs%n",
+                postings[0], name, seconds);
+    }
+
+    // score = tf * log(N / df), so tf = score / log(N / df); every posting had tf >= 1
+    private static void writeTerm(SegmentWriter writer, String term, int[] docIds, double[] scores,
+                                  int count, int totalDocs) throws IOException {
+        double idf = Math.log((double) Math.max(totalDocs, count) / count);
+        int[] freqs = new int[count];
+        for (int i = 0; i < count; i++) {
+            freqs[i] = idf > 0 ? Math.max(1, (int) Math.round(scores[i] / idf)) : 1;
+        }
+        writer.addTerm(term, docIds, freqs, count);
+    }
+
+    private static int tokenCount(Analyzer analyzer, String text) {
+        if (text == null) return 0;
+        int[] count = {0};
+        analyzer.analyze(text, (term, length, position, start, end) -> count[0]++);
+        return count[0];
+    }
+
+    // One title term's postings, collected in doc id order while scanning pages
+    private static class TitlePostings {
+        int[] docIds = new int[4];
+        int[] freqs = new int[4];
+        int size = 0;
+
+        void add(int docId, int tf) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docIds[size] = docId;
+            freqs[size++] = tf;
+        }
+
+        int write(SegmentWriter writer, String term) throws IOException {
+            writer.addTerm(term, docIds, freqs, size);
+            return size;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package indexer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+// Rewrites several segments as one, dropping deleted documents. Both the term
+// dictionaries and each term's postings are k-way merged, so memory stays
+// proportional to the number of input segments, not their size.
+final class SegmentMerger {
+    private SegmentMerger() {}
+
+    // Returns the number of live documents written
+    static int merge(List<Segment> inputs, BitSet deleted, Path target) throws IOException {
+        boolean positions = true;  // kept only if every input has them
+        for (Segment input : inputs) positions &= input.hasPositions();
+        SegmentWriter writer = new SegmentWriter(target, positions);
+        try {
+            // Documents first: the writer needs their lengths while writing postings
+            int[] slots = new int[inputs.size()];
+            int live = 0;
+            while (true) {
+                int best = -1;
+                for (int i = 0; i < inputs.size(); i++) {
+                    if (slots[i] < inputs.get(i).docCount() && (best < 0
+                            || inputs.get(i).docIdAt(slots[i]) < inputs.get(best).docIdAt(slots[best]))) {
+                        best = i;
+                    }
+                }
+                if (best < 0) break;
+                Segment segment = inputs.get(best);
+                int slot = slots[best]++;
+                int docId = segment.docIdAt(slot);
+                if (deleted.get(docId)) continue;
+                writer.addDocument(docId, segment.docLengthAt(slot), segment.titleLengthAt(slot),
+                        segment.urlAt(slot));
+                live++;
+            }
+            List<Iterator<Segment.TermInfo>> terms = new ArrayList<>();
+            Segment.TermInfo[] heads = new Segment.TermInfo[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                terms.add(inputs.get(i).terms());
+                heads[i] = terms.get(i).hasNext() ? terms.get(i).next() : null;
+            }
+
+            while (true) {
+                String term = null;
+                for (Segment.TermInfo head : heads) {
+                    if (head != null && (term == null || Indexer.compareUtf8(head.term(), term) < 0)) {
+                        term = head.term();
+                    }
+                }
+                if (term == null) break;
+
+                List<PostingsIterator> postings = new ArrayList<>();
+                for (int i = 0; i < heads.length; i++) {
+                    if (heads[i] != null && heads[i].term().equals(term)) {
+                        PostingsIterator it = inputs.get(i).postings(heads[i]);
+                        it.nextDoc();
+                        postings.add(it);
+                        heads[i] = terms.get(i).hasNext() ? terms.get(i).next() : null;
+                    }
+                }
+                mergePostings(writer, term, postings, deleted, positions);
+            }
+
+            writer.close();
+            return live;
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    private static void mergePostings(SegmentWriter writer, String term, List<PostingsIterator> postings,
+                                      BitSet deleted, boolean positions) throws IOException {
+        boolean started = false;
+        int[] buffer = new int[16];
+        while (true) {
+            PostingsIterator next = null;
+            for (PostingsIterator it : postings) {
+                if (it.docId() != PostingsIterator.NO_MORE_DOCS && (next == null || it.docId() < next.docId())) {
+                    next = it;
+                }
+            }
+            if (next == null) break;
+            int doc = next.docId();
+            if (!deleted.get(doc)) {
+                if (!started) {
+                    writer.startTerm(term);
+                    started = true;
+                }
+                if (positions) {
+                    if (buffer.length < next.freq()) buffer = new int[next.freq()];
+                    writer.addPosting(doc, buffer, 0, next.positions(buffer));
+                } else {
+                    writer.addPosting(doc, next.freq());
+                }
+            }
+            next.nextDoc();
+        }
+    }
+}
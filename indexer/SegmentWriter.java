@@ -0,0 +1,369 @@
+package indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+// Streams a segment to disk. All documents are added first, in ascending doc id
+// order (their lengths bound each term's scores); then terms in ascending UTF-8 byte
+// order, each term's postings in ascending doc id order. The file is written under
+// a temporary name and moved into place on close().
+//
+// Layout (see Segment for the reader):
+//   header   magic, version, termCount, docCount, dictOffset, termBytesOffset, docTableOffset,
+//            docBytesOffset, flags, firstDocId, normsOffset, totalLength, totalTitleLength
+//   postings per term: blocks of BLOCK_SIZE (varint doc delta, varint tf), then skip entries
+//            (lastDoc, postings block start, positions block start), then with FLAG_POSITIONS
+//            one entry per posting: varint byte length, then tf varint position deltas
+//   dict     termCount x DICT_ENTRY_BYTES, sorted by term
+//   terms    UTF-8 term bytes
+//   docs     docCount x DOC_ENTRY_BYTES (docId, length, titleLength, urlOffset, urlLength),
+//            sorted by doc id
+//   urls     UTF-8 url bytes
+//   norms    (body, title) norm bytes per doc, in doc table order
+public class SegmentWriter implements Closeable {
+    private final Path target;
+    private final Path temp;
+    private final CountingOutputStream counter;
+    private final DataOutputStream out;
+    private final boolean withPositions;
+
+    private final ByteArrayOutputStream dict = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream docTable = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream urlBytes = new ByteArrayOutputStream();
+    private byte[] lastTerm = null;
+    private int lastDocId = -1;
+    private int termCount = 0;
+    private int docCount = 0;
+    private long totalLength = 0;
+    private long totalTitleLength = 0;
+    private int firstDocId = 0;
+    private int[] docIds = new int[128];  // in addition order (ascending), for norm lookups
+    private byte[] norms = new byte[256];  // two per doc, in the same order
+
+    // Postings of the term currently being added
+    private String currentTerm = null;
+    private int[] docs = new int[64];
+    private int[] freqs = new int[64];
+    private int[] posStarts = new int[64];  // into positions, per posting
+    private int[] positions = new int[256];
+    private int positionCount = 0;
+    private int size = 0;
+    private boolean title = false;  // current term is in the title field
+    private boolean aborted = false;
+    private final VarIntBuffer positionBytes = new VarIntBuffer();
+
+    public SegmentWriter(Path target) throws IOException {
+        this(target, false);
+    }
+
+    // With positions, every posting must be added with its token positions
+    public SegmentWriter(Path target, boolean withPositions) throws IOException {
+        this.target = target;
+        this.withPositions = withPositions;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        this.counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+        this.out = new DataOutputStream(counter);
+        out.write(new byte[Segment.HEADER_BYTES]);  // patched in close()
+    }
+
+    public void startTerm(String term) throws IOException {
+        if (currentTerm != null) finishTerm();
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        if (lastTerm != null && Arrays.compareUnsigned(lastTerm, bytes) >= 0) {
+            throw new IllegalArgumentException("Terms out of order: " + term);
+        }
+        lastTerm = bytes;
+        currentTerm = term;
+        title = Segment.isTitleTerm(term);
+        size = 0;
+        positionCount = 0;
+    }
+
+    public void addPosting(int docId, int tf) {
+        if (withPositions) throw new IllegalStateException("Segment is written with positions");
+        append(docId, tf);
+    }
+
+    // Positions must be ascending; the posting's tf is their count
+    public void addPosting(int docId, int[] termPositions, int from, int count) {
+        if (!withPositions) throw new IllegalStateException("Segment is written without positions");
+        append(docId, count);
+        if (positionCount + count > positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + count));
+        }
+        System.arraycopy(termPositions, from, positions, positionCount, count);
+        positionCount += count;
+    }
+
+    private void append(int docId, int tf) {
+        if (size > 0 && docs[size - 1] >= docId) {
+            throw new IllegalArgumentException("Doc ids out of order for '" + currentTerm + "': " + docId);
+        }
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            freqs = Arrays.copyOf(freqs, size * 2);
+            posStarts = Arrays.copyOf(posStarts, size * 2);
+        }
+        docs[size] = docId;
+        freqs[size] = tf;
+        posStarts[size] = positionCount;
+        size++;
+    }
+
+    // Convenience for callers that already hold a term's full postings
+    public void addTerm(String term, int[] docIds, int[] termFreqs, int count) throws IOException {
+        startTerm(term);
+        for (int i = 0; i < count; i++) addPosting(docIds[i], termFreqs[i]);
+    }
+
+    public void addDocument(int docId, int length, int titleLength, String url) throws IOException {
+        if (docId <= lastDocId) throw new IllegalArgumentException("Documents out of order: " + docId);
+        if (lastTerm != null) throw new IllegalStateException("Documents must be added before terms");
+        if (docCount == 0) firstDocId = docId;
+        lastDocId = docId;
+        if (docCount == docIds.length) {
+            docIds = Arrays.copyOf(docIds, docCount * 2);
+            norms = Arrays.copyOf(norms, docCount * 4);
+        }
+        docIds[docCount] = docId;
+        norms[docCount * 2] = Bm25.encodeLength(length);
+        norms[docCount * 2 + 1] = Bm25.encodeLength(titleLength);
+        totalLength += length;
+        totalTitleLength += titleLength;
+
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        DataOutputStream entry = new DataOutputStream(docTable);
+        entry.writeInt(docId);
+        entry.writeInt(length);
+        entry.writeInt(titleLength);
+        entry.writeInt(urlBytes.size());
+        entry.writeInt(bytes.length);
+        urlBytes.write(bytes);
+        docCount++;
+    }
+
+    private void finishTerm() throws IOException {
+        String term = currentTerm;
+        currentTerm = null;
+        if (size == 0) return;
+
+        int maxTf = 0;
+        int minNorm = 255;
+        for (int i = 0; i < size; i++) {
+            maxTf = Math.max(maxTf, freqs[i]);
+            minNorm = Math.min(minNorm, normOf(docs[i]));
+        }
+
+        long postingsOffset = counter.count;
+        int blocks = (size + Segment.BLOCK_SIZE - 1) / Segment.BLOCK_SIZE;
+        int[] blockLastDoc = new int[blocks];
+        int[] blockStart = new int[blocks];
+        int[] positionsBlockStart = new int[blocks];
+
+        // Positions are encoded first so the skip entries can point into them
+        positionBytes.reset();
+        if (withPositions) {
+            for (int i = 0; i < size; i++) {
+                if (i % Segment.BLOCK_SIZE == 0) {
+                    positionsBlockStart[i / Segment.BLOCK_SIZE] = positionBytes.size();
+                }
+                positionBytes.writeDeltas(positions, posStarts[i], freqs[i]);
+            }
+        }
+
+        int prev = 0;
+        for (int i = 0; i < size; i++) {
+            if (i % Segment.BLOCK_SIZE == 0) {
+                blockStart[i / Segment.BLOCK_SIZE] = (int) (counter.count - postingsOffset);
+            }
+            writeVarInt(docs[i] - prev);
+            writeVarInt(freqs[i]);
+            prev = docs[i];
+            if (i % Segment.BLOCK_SIZE == Segment.BLOCK_SIZE - 1 || i == size - 1) {
+                blockLastDoc[i / Segment.BLOCK_SIZE] = docs[i];
+            }
+        }
+
+        long skipOffset = -1;
+        if (blocks > 1) {
+            skipOffset = counter.count;
+            for (int b = 0; b < blocks; b++) {
+                out.writeInt(blockLastDoc[b]);
+                out.writeInt(blockStart[b]);
+                out.writeInt(positionsBlockStart[b]);
+            }
+        }
+
+        long positionsOffset = -1;
+        if (withPositions) {
+            positionsOffset = counter.count;
+            positionBytes.writeTo(out);
+        }
+
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        DataOutputStream entry = new DataOutputStream(dict);
+        entry.writeInt(termBytes.size());
+        entry.writeInt(bytes.length);
+        entry.writeInt(size);
+        entry.writeInt(maxTf);
+        entry.writeLong(postingsOffset);
+        entry.writeLong(skipOffset);
+        entry.writeLong(positionsOffset);
+        entry.writeInt(minNorm);
+        termBytes.write(bytes);
+        termCount++;
+    }
+
+    private int normOf(int docId) {
+        int slot = docId - firstDocId;  // the doc's slot when no ids are missing before it
+        if (slot < 0 || slot >= docCount || docIds[slot] != docId) slot = Arrays.binarySearch(docIds, 0, docCount, docId);
+        if (slot < 0) throw new IllegalArgumentException("Posting for doc " + docId + " without a document entry");
+        return norms[slot * 2 + (title ? 1 : 0)] & 0xFF;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // Discard the partially written file; close() becomes a no-op
+    public void abort() {
+        aborted = true;
+        try {
+            out.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (aborted) return;
+        if (currentTerm != null) finishTerm();
+
+        long dictOffset = counter.count;
+        dict.writeTo(out);
+        long termBytesOffset = counter.count;
+        termBytes.writeTo(out);
+        long docTableOffset = counter.count;
+        docTable.writeTo(out);
+        long docBytesOffset = counter.count;
+        urlBytes.writeTo(out);
+        long normsOffset = counter.count;
+        out.write(norms, 0, docCount * 2);
+        out.close();
+
+        if (counter.count > Integer.MAX_VALUE) {
+            Files.deleteIfExists(temp);
+            throw new IOException("Segment exceeds 2 GB; split the corpus into more segments");
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(temp.toFile(), "rw")) {
+            file.writeInt(Segment.MAGIC);
+            file.writeInt(Segment.VERSION);
+            file.writeInt(termCount);
+            file.writeInt(docCount);
+            file.writeLong(dictOffset);
+            file.writeLong(termBytesOffset);
+            file.writeLong(docTableOffset);
+            file.writeLong(docBytesOffset);
+            file.writeInt(withPositions ? Segment.FLAG_POSITIONS : 0);
+            file.writeInt(firstDocId);
+            file.writeLong(normsOffset);
+            file.writeLong(totalLength);
+            file.writeLong(totalTitleLength);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Reusable byte buffer for one term's positions region
+    private static class VarIntBuffer {
+        private byte[] bytes = new byte[1024];
+        private int size = 0;
+        private final byte[] scratch = new byte[5];
+
+        void reset() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // One entry: byte length, then the positions as deltas
+        void writeDeltas(int[] values, int from, int count) {
+            int lengthAt = size;
+            ensure(5);
+            size += 5;  // room for the longest length prefix, compacted below
+            int prev = 0;
+            for (int i = from; i < from + count; i++) {
+                write(values[i] - prev);
+                prev = values[i];
+            }
+            int length = size - lengthAt - 5;
+            int prefix = encode(length, scratch, 0);
+            System.arraycopy(bytes, lengthAt + 5, bytes, lengthAt + prefix, length);
+            System.arraycopy(scratch, 0, bytes, lengthAt, prefix);
+            size = lengthAt + prefix + length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+        private void write(int value) {
+            ensure(5);
+            size += encode(value, bytes, size);
+        }
+
+        private static int encode(int value, byte[] into, int at) {
+            int start = at;
+            while ((value & ~0x7F) != 0) {
+                into[at++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            into[at++] = (byte) value;
+            return at - start;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package indexer;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Query-dependent snippets. The page text is scanned once with the index's
+// analyzer, which yields every token's term and character offsets; the window
+// holding the most distinct query terms (then the most matches) is chosen with
+// two pointers, and highlighting is a single copy of that window.
+final class SnippetBuilder {
+    static final int WINDOW = 160;
+
+    private SnippetBuilder() {}
+
+    static String build(Analyzer analyzer, String content, List<String> queryTerms, String open, String close) {
+        char[][] terms = new char[queryTerms.size()][];
+        for (int i = 0; i < terms.length; i++) terms[i] = queryTerms.get(i).toCharArray();
+
+        // 1. Offsets and query-term index of every matching token
+        int[][] matches = {new int[16], new int[16], new int[16]};  // start, end, term
+        int[] count = {0};
+        analyzer.analyze(content, (term, length, position, start, end) -> {
+            int which = indexOf(terms, term, length);
+            if (which < 0) return;
+            if (count[0] == matches[0].length) {
+                for (int m = 0; m < 3; m++) matches[m] = Arrays.copyOf(matches[m], count[0] * 2);
+            }
+            matches[0][count[0]] = start;
+            matches[1][count[0]] = end;
+            matches[2][count[0]] = which;
+            count[0]++;
+        });
+        int[] starts = matches[0], ends = matches[1], which = matches[2];
+        int n = count[0];
+
+        // 2. Densest window: most distinct terms, then most matches, within WINDOW chars
+        int bestFirst = 0, bestLast = -1, bestDistinct = 0, bestMatches = 0;
+        int[] inWindow = new int[terms.length];
+        int distinct = 0;
+        for (int first = 0, last = 0; last < n; last++) {
+            if (inWindow[which[last]]++ == 0) distinct++;
+            while (ends[last] - starts[first] > WINDOW) {
+                if (--inWindow[which[first]] == 0) distinct--;
+                first++;
+            }
+            int size = last - first + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && size > bestMatches)) {
+                bestFirst = first;
+                bestLast = last;
+                bestDistinct = distinct;
+                bestMatches = size;
+            }
+        }
+
+        // 3. Center the matches in the window, snapped to word boundaries
+        int from = 0;
+        if (bestLast >= 0) {
+            int span = ends[bestLast] - starts[bestFirst];
+            from = Math.max(0, starts[bestFirst] - (WINDOW - span) / 2);
+            from = Math.min(from, starts[bestFirst]);
+            while (from > 0 && from < starts[bestFirst] && !Character.isWhitespace(content.charAt(from - 1))) {
+                from++;
+            }
+        }
+        int to = Math.min(content.length(), from + WINDOW);
+        while (to < content.length() && to > from && !Character.isWhitespace(content.charAt(to))
+                && (bestLast < 0 || to > ends[bestLast])) {
+            to--;
+        }
+        if (bestLast >= 0) to = Math.max(to, Math.min(content.length(), ends[bestLast]));
+
+        // 4. One pass: copy the window, collapse whitespace, wrap the matches
+        StringBuilder out = new StringBuilder(to - from + 16);
+        if (from > 0) out.append("… ");
+        int next = 0;
+        while (next < n && starts[next] < from) next++;
+        boolean space = false;
+        for (int i = from; i < to; i++) {
+            if (next < n && i == starts[next]) {
+                if (space && out.length() > 0) out.append(' ');
+                space = false;
+                out.append(open).append(content, starts[next], Math.min(ends[next], to)).append(close);
+                i = Math.min(ends[next], to) - 1;
+                next++;
+                continue;
+            }
+            char c = content.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space && out.length() > 0) out.append(' ');
+                out.append(c);
+                space = false;
+            }
+        }
+        if (to < content.length()) out.append(" …");
+        return out.toString();
+    }
+
+    private static int indexOf(char[][] terms, char[] term, int length) {
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].length == length && Arrays.equals(terms[i], 0, length, term, 0, length)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,119 @@
+package indexer;
+
+import java.util.Arrays;
+
+// Per-document term frequencies keyed directly by the analyzer's char buffer.
+// Term chars are copied into one shared pool and the table is open addressing
+// over int arrays, so counting allocates nothing once warmed up; a String is
+// only built per distinct term when the counts are read out. Tokens are assumed
+// to arrive in position order, so each term's positions can be grouped afterwards.
+// Reuse via clear().
+final class TermCounter {
+    private static final int EMPTY = -1;
+
+    private int[] table = new int[512];  // slot -> entry index, EMPTY if free
+    private int[] offsets = new int[256];
+    private int[] lengths = new int[256];
+    private int[] counts = new int[256];
+    private char[] pool = new char[4096];
+    private int poolSize = 0;
+    private int size = 0;
+    private int[] tokenEntries = new int[1024];  // entry of each token, in position order
+    private int tokens = 0;
+    private int[] grouped = new int[1024];        // positions, grouped by entry
+    private int[] groupStarts = new int[257];
+
+    TermCounter() {
+        Arrays.fill(table, EMPTY);
+    }
+
+    void add(char[] term, int length) {
+        if (tokens == tokenEntries.length) tokenEntries = Arrays.copyOf(tokenEntries, tokens * 2);
+        int mask = table.length - 1;
+        int slot = hash(term, 0, length) & mask;
+        for (int entry; (entry = table[slot]) != EMPTY; slot = (slot + 1) & mask) {
+            if (lengths[entry] == length
+                    && Arrays.equals(pool, offsets[entry], offsets[entry] + length, term, 0, length)) {
+                counts[entry]++;
+                tokenEntries[tokens++] = entry;
+                return;
+            }
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        if (poolSize + length > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        System.arraycopy(term, 0, pool, poolSize, length);
+        offsets[size] = poolSize;
+        lengths[size] = length;
+        counts[size] = 1;
+        poolSize += length;
+        tokenEntries[tokens++] = size;
+        table[slot] = size++;
+        if (size * 2 > table.length) rehash(table.length * 2);
+    }
+
+    int size() {
+        return size;
+    }
+
+    String term(int i) {
+        return new String(pool, offsets[i], lengths[i]);
+    }
+
+    int count(int i) {
+        return counts[i];
+    }
+
+    // Bucket every token's position under its term; afterwards term i's positions are
+    // positions()[positionsStart(i) .. positionsStart(i) + count(i))
+    void groupPositions() {
+        if (groupStarts.length < size + 1) groupStarts = new int[size + 1];
+        if (grouped.length < tokens) grouped = new int[Math.max(tokens, grouped.length * 2)];
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            groupStarts[i] = start;
+            start += counts[i];
+        }
+        groupStarts[size] = start;
+        for (int position = 0; position < tokens; position++) {
+            grouped[groupStarts[tokenEntries[position]]++] = position;
+        }
+        for (int i = size; i > 0; i--) groupStarts[i] = groupStarts[i - 1];  // undo the cursor bumps
+        groupStarts[0] = 0;
+    }
+
+    int[] positions() {
+        return grouped;
+    }
+
+    int positionsStart(int i) {
+        return groupStarts[i];
+    }
+
+    void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+        poolSize = 0;
+        tokens = 0;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(pool, offsets[i], lengths[i]) & mask;
+            while (table[slot] != EMPTY) slot = (slot + 1) & mask;
+            table[slot] = i;
+        }
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) h = 31 * h + chars[i];
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,33 @@
+package indexer;
+
+// BM25 score of one term's postings in one segment: weight * tf / (tf + lengthNorm),
+// where weight already includes idf, boost and (k1 + 1). See Bm25.
+final class TermScorer {
+    final PostingsIterator postings;
+    private final Segment segment;
+    private final boolean title;
+    private final float[] lengthTable;
+    private final float weight;
+    private int slot = 0;  // doc table slot of the last scored doc; postings only move forward
+
+    TermScorer(Segment segment, PostingsIterator postings, boolean title, float[] lengthTable, float weight) {
+        this.segment = segment;
+        this.postings = postings;
+        this.title = title;
+        this.lengthTable = lengthTable;
+        this.weight = weight;
+    }
+
+    // Score of the current posting
+    float score() {
+        int tf = postings.freq();
+        slot = segment.slotFrom(slot, postings.docId());
+        return weight * tf / (tf + lengthTable[segment.normAt(slot, title)]);
+    }
+
+    // Upper bound for any posting: the highest tf in the shortest doc
+    float maxScore() {
+        Segment.TermInfo info = postings.termInfo();
+        return weight * info.maxTf() / (info.maxTf() + lengthTable[info.minNorm()]);
+    }
+}
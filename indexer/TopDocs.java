@@ -0,0 +1,103 @@
+package indexer;
+
+import java.util.Arrays;
+
+// Bounded min-heap of the best k (doc, score) pairs seen so far. The weakest entry
+// sits at the root, so its score is the threshold a new doc has to beat.
+final class TopDocs {
+    private final int k;
+    private int[] docs;
+    private float[] scores;
+    private int size = 0;
+
+    TopDocs(int k) {
+        this.k = Math.max(1, k);
+        int capacity = Math.min(this.k, 64);
+        docs = new int[capacity];
+        scores = new float[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == k;
+    }
+
+    // Score a doc must exceed to get in; -infinity until k docs have been collected
+    float threshold() {
+        return isFull() ? scores[0] : Float.NEGATIVE_INFINITY;
+    }
+
+    // Returns true if the doc was kept
+    boolean insert(int doc, float score) {
+        if (size < k) {
+            if (size == docs.length) {
+                int capacity = (int) Math.min(k, docs.length * 2L);
+                docs = Arrays.copyOf(docs, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (weaker(docs[0], scores[0], doc, score)) {
+            docs[0] = doc;
+            scores[0] = score;
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    // Entries best first (highest score, then lowest doc id); empties the heap
+    int[] drainDocs(float[] outScores) {
+        int n = size;
+        int[] outDocs = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            outDocs[i] = docs[0];
+            outScores[i] = scores[0];
+            size--;
+            docs[0] = docs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return outDocs;
+    }
+
+    // a ranks below b: lower score, or the same score and a higher doc id
+    private static boolean weaker(int docA, float scoreA, int docB, float scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!weaker(docs[i], scores[i], docs[parent], scores[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1, right = left + 1, weakest = i;
+            if (left < size && weaker(docs[left], scores[left], docs[weakest], scores[weakest])) weakest = left;
+            if (right < size && weaker(docs[right], scores[right], docs[weakest], scores[weakest])) weakest = right;
+            if (weakest == i) return;
+            swap(i, weakest);
+            i = weakest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int d = docs[a];
+        docs[a] = docs[b];
+        docs[b] = d;
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+    }
+}
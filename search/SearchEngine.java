@@ -1,27 +1,123 @@
 package search;
 
+import indexer.Analyzer;
+import indexer.Bm25;
 import indexer.Indexer;
+import indexer.QueryCache;
+import indexer.SearchFilters;
+import indexer.SearchResult;
 import utils.DBManager;
+import utils.QueryLog;
+import utils.UserProfile;
+import java.util.ArrayList;
 import java.util.List;
 
-public class SearchEngine {
+// Safe to share between threads: searches read the current immutable index snapshot,
+// which updates replace atomically, and queries are logged asynchronously.
+public class SearchEngine implements AutoCloseable {
+    public static final int DEFAULT_RESULTS = 10;
+    private static final long REFRESH_INTERVAL_MS = 2000;  // new crawls become searchable within this
+    private static final char MATCH_OPEN = '\u0001', MATCH_CLOSE = '\u0002';  // replaced after escaping
+
     private final Indexer indexer;
+    private final QueryLog queryLog;
 
     public SearchEngine() {
+        this(false);
+    }
+
+    public SearchEngine(boolean rebuildIndex) {
+        this(rebuildIndex, Indexer.DEFAULT_QUERY_CACHE_SIZE, Indexer.DEFAULT_QUERY_CACHE_TTL_MS);
+    }
+
+    // Opens the persisted index; rebuilds only when asked to or when it is missing.
+    // A stale index is brought up to date incrementally, then kept fresh in the background.
+    // The result cache holds queryCacheSize entries (0 disables it), each for at most
+    // queryCacheTtlMillis when that is positive.
+    public SearchEngine(boolean rebuildIndex, int queryCacheSize, long queryCacheTtlMillis) {
+        this(openIndex(rebuildIndex, queryCacheSize, queryCacheTtlMillis));
+    }
+
+    // Searches an index the caller already opened or built, e.g. right after indexing
+    // in the same process, instead of opening a second copy. The engine takes it over:
+    // close() closes it.
+    public SearchEngine(Indexer indexer) {
+        this.indexer = indexer;
+        indexer.startAutoRefresh(REFRESH_INTERVAL_MS);
+        queryLog = new QueryLog();
+    }
+
+    private static Indexer openIndex(boolean rebuildIndex, int queryCacheSize, long queryCacheTtlMillis) {
         DBManager.initDB();
         DBManager.createInvertedIndexTable();
-        DBManager.createUserQueryTable();
-        indexer = new Indexer();
-        indexer.buildIndex();
+        Indexer indexer = new Indexer(Analyzer.standard(), true, Bm25.standard(), Indexer.DEFAULT_SHARDS,
+                queryCacheSize, queryCacheTtlMillis);
+        if (rebuildIndex || !indexer.open()) {
+            indexer.buildIndex();
+        } else if (indexer.isStale()) {
+            indexer.updateIndex();
+        }
+        return indexer;
     }
 
     public List<String> search(String userId, String query) {
-    DBManager.saveUserQuery(userId, query);                 
-    return indexer.search(query, userId, null, null);       
-}
+        return search(userId, query, DEFAULT_RESULTS);
+    }
+
+    // Best k results. Nothing is printed here; see Indexer.printResults for console output.
+    public List<String> search(String userId, String query, int k) {
+        List<SearchResult> results = searchResults(userId, query, k, SearchFilters.NONE);
+        List<String> urls = new ArrayList<>(results.size());
+        for (SearchResult result : results) urls.add(result.url());
+        return urls;
+    }
 
+    // Ranked hits personalized for userId (may be null); the query is logged in the background.
+    // If the user's profile cannot be read, this search is not personalized and the stored
+    // profile is left as it is.
+    public List<SearchResult> searchResults(String userId, String query, int k, SearchFilters filters) {
+        UserProfile profile = indexer.getProfiles().update(userId, query);
+        queryLog.log(userId, query, profile);
+        return indexer.search(query, k, filters, profile != null ? profile : UserProfile.EMPTY);
+    }
+
+    // Query-dependent snippet for a hit, matches wrapped in open/close
+    public String snippet(String query, int docId, String open, String close) {
+        return indexer.snippet(query, docId, open, close);
+    }
+
+    // Snippet ready to embed in HTML: the page text escaped, matches in <b>. Marks are
+    // placed as control chars and swapped for tags after escaping, so page text can
+    // never inject markup.
+    public String snippetHtml(String query, int docId) {
+        String snippet = snippet(query, docId, String.valueOf(MATCH_OPEN), String.valueOf(MATCH_CLOSE));
+        return escapeHtml(snippet)
+                .replace(String.valueOf(MATCH_OPEN), "<b>")
+                .replace(String.valueOf(MATCH_CLOSE), "</b>");
+    }
+
+    public static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\"", "&quot;").replace("'", "&#39;");
+    }
+
+    // Hit/miss/eviction counters for sizing the result cache
+    public QueryCache getQueryCache() {
+        return indexer.getQueryCache();
+    }
 
     public List<String> autocomplete(String prefix) {
         return indexer.getAutocompleteSuggestions(prefix);
     }
+
+    public List<String> autocomplete(String prefix, int limit) {
+        return indexer.getAutocompleteSuggestions(prefix, limit);
+    }
+
+    // Writes out pending query logs, stops background indexing and closes the index
+    @Override
+    public void close() {
+        queryLog.close();
+        indexer.close();
+    }
 }
@@ -1,72 +1,126 @@
 package search;
 
+import indexer.SearchFilters;
+import indexer.SearchResult;
+
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.HyperlinkEvent;
-import javax.swing.event.HyperlinkListener;
+import javax.swing.text.Element;
+import javax.swing.text.html.HTMLDocument;
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+// Swing front end. Nothing slow runs on the event dispatch thread: the index loads
+// in a SwingWorker behind a progress bar, each search runs in its own worker and
+// streams result rows into the page as their snippets are ready, and autocomplete
+// looks words up in the background once typing pauses. A new search supersedes the
+// running one, whose late rows are then ignored.
 public class SearchGUI {
-    private SearchEngine engine;
+    private static final String USER_ID = "user123";
+    private static final int RESULTS = 20;
+    private static final int SUGGESTIONS = 8;
+    private static final int AUTOCOMPLETE_DELAY_MS = 150;  // debounce: look up once typing pauses
+
+    private volatile SearchEngine engine;  // null until the index has loaded
+    private JFrame frame;
+    private JTextField searchField;
+    private JButton searchButton;
+    private JEditorPane resultPane;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+
+    private final DefaultListModel<String> suggestionModel = new DefaultListModel<>();
+    private final JList<String> suggestionList = new JList<>(suggestionModel);
+    private JWindow suggestionWindow;
+    private Timer autocompleteTimer;
+    private boolean settingText = false;  // our own edits to the field don't trigger autocomplete
+
+    // Only the worker of the latest search/lookup may touch the UI
+    private SearchWorker currentSearch;
+    private SwingWorker<List<String>, Void> currentLookup;
 
     public SearchGUI() {
-        engine = new SearchEngine();  // ✅ Your backend search engine
         createUI();
+        loadEngine();
     }
 
     private void createUI() {
-        JFrame frame = new JFrame("Personal Search Engine");
+        frame = new JFrame("Personal Search Engine");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(600, 500);
+        frame.setSize(700, 550);
 
         JPanel panel = new JPanel(new BorderLayout());
 
-        // 🔎 Top: search bar
-        JTextField searchField = new JTextField();
-        JButton searchButton = new JButton("Search");
+        // 🔎 Top: search bar, disabled until the index is ready
+        searchField = new JTextField();
+        searchButton = new JButton("Search");
+        searchField.setEnabled(false);
+        searchButton.setEnabled(false);
 
         JPanel searchPanel = new JPanel(new BorderLayout());
         searchPanel.add(searchField, BorderLayout.CENTER);
         searchPanel.add(searchButton, BorderLayout.EAST);
 
         // 📄 Center: clickable results area
-        JEditorPane resultPane = new JEditorPane();
+        resultPane = new JEditorPane();
         resultPane.setContentType("text/html");
         resultPane.setEditable(false);
+        showMessage("Loading the index…");
 
         // 🌐 Enable hyperlink clicks to open browser
-        resultPane.addHyperlinkListener(new HyperlinkListener() {
-            public void hyperlinkUpdate(HyperlinkEvent e) {
-                if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
-                    try {
-                        Desktop.getDesktop().browse(e.getURL().toURI());
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    }
+        resultPane.addHyperlinkListener(e -> {
+            if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
+                try {
+                    Desktop.getDesktop().browse(e.getURL().toURI());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
                 }
             }
         });
 
         JScrollPane scrollPane = new JScrollPane(resultPane);
 
+        // ⏳ Bottom: status line and progress bar
+        statusLabel = new JLabel("Loading the index…");
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        JPanel statusPanel = new JPanel(new BorderLayout(8, 0));
+        statusPanel.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        statusPanel.add(progressBar, BorderLayout.EAST);
+
         panel.add(searchPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(statusPanel, BorderLayout.SOUTH);
 
-        // 🔍 Search button action
-        searchButton.addActionListener(e -> {
-            String query = searchField.getText().trim();
-            if (!query.isEmpty()) {
-                List<String> results = engine.search("user123", query);  // your search method
-                if (results.isEmpty()) {
-                    resultPane.setText("<html><body>No results found.</body></html>");
-                } else {
-                    StringBuilder html = new StringBuilder("<html><body>");
-                    for (String url : results) {
-                        html.append("🔗 <a href='").append(url).append("'>").append(url).append("</a><br>");
-                    }
-                    html.append("</body></html>");
-                    resultPane.setText(html.toString());
-                }
+        createSuggestionPopup();
+
+        // 🔍 Search on the button or Enter (Enter on a highlighted suggestion takes it instead)
+        searchButton.addActionListener(e -> search());
+        searchField.addActionListener(e -> {
+            if (suggestionWindow.isVisible() && suggestionList.getSelectedIndex() >= 0) {
+                acceptSuggestion(suggestionList.getSelectedValue());
+            } else {
+                search();
+            }
+        });
+
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                SearchEngine current = engine;
+                if (current != null) current.close();  // writes out the query log
             }
         });
 
@@ -74,6 +128,250 @@ public class SearchGUI {
         frame.setVisible(true);
     }
 
+    // 💡 Dropdown under the search field. The window never takes focus, so typing
+    // continues in the field; arrow keys move through it and Escape closes it.
+    private void createSuggestionPopup() {
+        suggestionWindow = new JWindow(frame);
+        suggestionWindow.setFocusableWindowState(false);
+        suggestionList.setFocusable(false);
+        suggestionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        suggestionWindow.add(new JScrollPane(suggestionList));
+
+        suggestionList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = suggestionList.locationToIndex(e.getPoint());
+                if (index >= 0) acceptSuggestion(suggestionModel.get(index));
+            }
+        });
+
+        searchField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!suggestionWindow.isVisible()) return;
+                int selected = suggestionList.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN -> moveSelection(Math.min(selected + 1, suggestionModel.size() - 1));
+                    case KeyEvent.VK_UP -> moveSelection(Math.max(selected - 1, -1));
+                    case KeyEvent.VK_ESCAPE -> hideSuggestions();
+                    default -> { return; }
+                }
+                e.consume();
+            }
+        });
+
+        searchField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                hideSuggestions();
+            }
+        });
+
+        // Each keystroke only restarts the timer; the lookup runs when it fires
+        autocompleteTimer = new Timer(AUTOCOMPLETE_DELAY_MS, e -> lookUpSuggestions());
+        autocompleteTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { textChanged(); }
+            public void removeUpdate(DocumentEvent e) { textChanged(); }
+            public void changedUpdate(DocumentEvent e) {}
+        });
+    }
+
+    // ⏳ Opening (or building) the index can take a while on a large database
+    private void loadEngine() {
+        new SwingWorker<SearchEngine, Void>() {
+            @Override
+            protected SearchEngine doInBackground() {
+                return new SearchEngine();
+            }
+
+            @Override
+            protected void done() {
+                progressBar.setIndeterminate(false);
+                progressBar.setVisible(false);
+                try {
+                    engine = get();
+                    statusLabel.setText("Index ready.");
+                    showMessage("Type a query and press Enter.");
+                    searchField.setEnabled(true);
+                    searchButton.setEnabled(true);
+                    searchField.requestFocusInWindow();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    statusLabel.setText("❌ Could not load the index: " + e.getMessage());
+                    showMessage("The index could not be loaded.");
+                }
+            }
+        }.execute();
+    }
+
+    private void search() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty() || engine == null) return;
+        hideSuggestions();
+        autocompleteTimer.stop();
+
+        // Interrupted, so a superseded search stops waiting for other shards or a database
+        // connection. Nothing it touches breaks on an interrupt: segments are memory-mapped
+        // and Segment.open closes their channels right after mapping.
+        if (currentSearch != null) currentSearch.cancel(true);
+        resultPane.setText("<html><body><div id='results'></div></body></html>");
+        statusLabel.setText("Searching for '" + query + "'…");
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(true);
+        currentSearch = new SearchWorker(engine, query);
+        currentSearch.execute();
+    }
+
+    // Ranks in one call, then renders hits one by one: each needs its page text for a snippet
+    private class SearchWorker extends SwingWorker<Integer, String> {
+        private final SearchEngine engine;
+        private final String query;
+        private final long start = System.nanoTime();
+
+        SearchWorker(SearchEngine engine, String query) {
+            this.engine = engine;
+            this.query = query;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            List<SearchResult> results = engine.searchResults(USER_ID, query, RESULTS, SearchFilters.NONE);
+            for (SearchResult result : results) {
+                if (isCancelled()) break;
+                publish(resultHtml(result.url(), engine.snippetHtml(query, result.docId())));
+            }
+            return results.size();
+        }
+
+        @Override
+        protected void process(List<String> rows) {
+            if (currentSearch != this) return;  // superseded
+            HTMLDocument document = (HTMLDocument) resultPane.getDocument();
+            Element body = document.getElement("results");
+            try {
+                for (String row : rows) document.insertBeforeEnd(body, row);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (currentSearch != this || isCancelled()) return;
+            progressBar.setVisible(false);
+            try {
+                int count = get();
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                if (count == 0) showMessage("No results found.");
+                statusLabel.setText(count + " results for '" + query + "' in " + millis + " ms");
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+                statusLabel.setText("❌ Search failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String resultHtml(String url, String snippetHtml) {
+        return "<p>🔗 <a href='" + escape(url) + "'>" + escape(url) + "</a><br>"
+                + "<font color='#555555'>" + snippetHtml + "</font></p>";
+    }
+
+    private void textChanged() {
+        if (settingText) return;
+        autocompleteTimer.restart();
+    }
+
+    // Suggestions for the word being typed (the last one in the field)
+    private void lookUpSuggestions() {
+        SearchEngine current = engine;
+        String prefix = lastWord(searchField.getText());
+        if (currentLookup != null) currentLookup.cancel(false);
+        if (current == null || prefix.isEmpty()) {
+            currentLookup = null;
+            hideSuggestions();
+            return;
+        }
+        currentLookup = new SwingWorker<>() {
+            @Override
+            protected List<String> doInBackground() {
+                return current.autocomplete(prefix, SUGGESTIONS);
+            }
+
+            @Override
+            protected void done() {
+                if (currentLookup != this || isCancelled()) return;
+                try {
+                    showSuggestions(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        currentLookup.execute();
+    }
+
+    private void showSuggestions(List<String> suggestions) {
+        // Nothing to offer beyond what is already typed
+        if (suggestions.isEmpty() || (suggestions.size() == 1
+                && suggestions.get(0).equalsIgnoreCase(lastWord(searchField.getText())))) {
+            hideSuggestions();
+            return;
+        }
+        suggestionModel.clear();
+        suggestionModel.addAll(suggestions);
+        suggestionList.clearSelection();
+        suggestionList.setVisibleRowCount(suggestions.size());
+
+        Point location = searchField.getLocationOnScreen();
+        suggestionWindow.setLocation(location.x, location.y + searchField.getHeight());
+        suggestionWindow.setSize(searchField.getWidth(), suggestionWindow.getPreferredSize().height);
+        suggestionWindow.setVisible(true);
+    }
+
+    private void hideSuggestions() {
+        if (currentLookup != null) currentLookup.cancel(false);
+        currentLookup = null;
+        suggestionWindow.setVisible(false);
+    }
+
+    private void moveSelection(int index) {
+        if (index < 0) {
+            suggestionList.clearSelection();
+        } else {
+            suggestionList.setSelectedIndex(index);
+            suggestionList.ensureIndexIsVisible(index);
+        }
+    }
+
+    // Replace the word being typed with the suggestion
+    private void acceptSuggestion(String word) {
+        String text = searchField.getText();
+        String head = text.substring(0, text.length() - lastWord(text).length());
+        settingText = true;
+        try {
+            searchField.setText(head + word + " ");
+        } finally {
+            settingText = false;
+        }
+        autocompleteTimer.stop();
+        hideSuggestions();
+    }
+
+    private static String lastWord(String text) {
+        int start = text.length();
+        while (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) start--;
+        return text.substring(start);
+    }
+
+    private void showMessage(String message) {
+        resultPane.setText("<html><body>" + escape(message) + "</body></html>");
+    }
+
+    private static String escape(String text) {
+        return SearchEngine.escapeHtml(text);
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(SearchGUI::new);
     }
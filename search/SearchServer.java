@@ -0,0 +1,207 @@
+package search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import indexer.SearchFilters;
+import indexer.SearchResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import utils.Database;
+import utils.LatencyHistogram;
+import utils.Metrics;
+
+// Headless JSON API on the JDK's built-in HttpServer, one virtual thread per request.
+// Requests only read the current index snapshot, so they never wait for indexing, and
+// query logging happens in the background (see SearchEngine).
+//   GET /search?q=...&k=10&user=...&site=...&after=2024-01-31&snippets=true
+//       (snippets are escaped HTML with matches in <b>)
+//   GET /autocomplete?prefix=...&limit=10
+//   GET /metrics   (plain text, see utils.Metrics)
+public class SearchServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int MAX_RESULTS = 100;
+    private static final int BACKLOG = 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final LongAdder REQUESTS = Metrics.counter("server.requests");
+    private static final LongAdder ERRORS = Metrics.counter("server.errors");
+    private static final LatencyHistogram REQUEST_TIME = Metrics.histogram("server.request");
+
+    private final SearchEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Port 0 picks a free port (see port())
+    public SearchServer(SearchEngine engine, int port) throws IOException {
+        this.engine = engine;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/search", exchange -> handle(exchange, JSON, this::search));
+        server.createContext("/autocomplete", exchange -> handle(exchange, JSON, this::autocomplete));
+        server.createContext("/metrics", exchange -> handle(exchange, TEXT, params -> Metrics.report()));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("🌐 Search server listening on http://localhost:" + port() + "/search?q=...");
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private interface Handler {
+        String respond(Map<String, String> params);
+    }
+
+    // Bad parameters are a 400, anything else unexpected a 500; errors are JSON too
+    private void handle(HttpExchange exchange, String contentType, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        REQUESTS.increment();
+        int status = 200;
+        String body;
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                status = 405;
+                body = error("Only GET is supported");
+            } else {
+                body = handler.respond(params(exchange.getRequestURI().getRawQuery()));
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error("Internal error");
+            e.printStackTrace();
+        }
+        if (status != 200) {
+            ERRORS.increment();
+            contentType = JSON;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        REQUEST_TIME.recordSince(start);
+    }
+
+    private String search(Map<String, String> params) {
+        String query = required(params, "q");
+        int k = Math.min(MAX_RESULTS, intParam(params, "k", SearchEngine.DEFAULT_RESULTS));
+        SearchFilters filters = new SearchFilters(params.get("site"), params.get("after"));
+        boolean snippets = Boolean.parseBoolean(params.getOrDefault("snippets", "false"));
+
+        long start = System.nanoTime();
+        List<SearchResult> results = engine.searchResults(params.get("user"), query, k, filters);
+        StringBuilder json = new StringBuilder(128 + results.size() * 128);
+        json.append("{\"query\":").append(quote(query)).append(",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            SearchResult result = results.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"url\":").append(quote(result.url()));
+            // JSON has no NaN or Infinity; such a score is left out rather than breaking the response
+            if (Float.isFinite(result.score())) json.append(",\"score\":").append(result.score());
+            if (snippets) json.append(",\"snippet\":").append(quote(engine.snippetHtml(query, result.docId())));
+            json.append('}');
+        }
+        json.append("],\"tookMicros\":").append((System.nanoTime() - start) / 1000).append('}');
+        return json.toString();
+    }
+
+    private String autocomplete(Map<String, String> params) {
+        String prefix = required(params, "prefix");
+        int limit = Math.min(MAX_RESULTS, intParam(params, "limit", 10));
+        List<String> suggestions = engine.autocomplete(prefix, limit);
+        StringBuilder json = new StringBuilder("{\"prefix\":").append(quote(prefix)).append(",\"suggestions\":[");
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(quote(suggestions.get(i)));
+        }
+        return json.append("]}").toString();
+    }
+
+    private static Map<String, String> params(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!value.isEmpty()) params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Missing parameter: " + name);
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) throw new NumberFormatException();
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a non-negative integer: " + name + "=" + value);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    static String quote(String text) {
+        StringBuilder out = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+                }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    // java search.SearchServer [port] [database]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        if (args.length > 1) Database.configure(args[1]);
+        SearchEngine engine = new SearchEngine();
+        SearchServer server = new SearchServer(engine, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            engine.close();
+        }));
+        server.start();
+    }
+}
@@ -0,0 +1,147 @@
+package autocomplete;
+
+import indexer.Analyzer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutocompleteTrieTest {
+    @TempDir
+    Path dir;
+
+    // Heaviest first, ties A-Z: the order autocomplete() promises
+    private static List<String> bruteForce(Map<String, Long> words, String prefix, int limit) {
+        return words.entrySet().stream()
+                .filter(e -> e.getKey().startsWith(prefix))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // Words over a small alphabet so prefixes are shared deeply; few distinct weights so ties are common
+    private static Map<String, Long> randomWords(Random random, int count) {
+        Map<String, Long> words = new HashMap<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int i = 0; i < length; i++) word.append((char) ('a' + random.nextInt(4)));
+            words.put(word.toString(), (long) random.nextInt(20));
+        }
+        return words;
+    }
+
+    private static AutocompleteTrie build(Map<String, Long> words) {
+        AutocompleteTrie.Builder builder = new AutocompleteTrie.Builder();
+        words.forEach(builder::add);
+        return builder.build();
+    }
+
+    @Test
+    void topKMatchesBruteForce() {
+        Random random = new Random(3);
+        Map<String, Long> words = randomWords(random, 5000);
+        AutocompleteTrie trie = build(words);
+        assertEquals(words.size(), trie.size());
+
+        for (int run = 0; run < 3000; run++) {
+            StringBuilder prefix = new StringBuilder();
+            int length = random.nextInt(7);
+            for (int i = 0; i < length; i++) prefix.append((char) ('a' + random.nextInt(5)));  // 'e' never matches
+            int limit = 1 + random.nextInt(AutocompleteTrie.TOP_K + 5);
+            assertEquals(bruteForce(words, prefix.toString(), limit), trie.autocomplete(prefix.toString(), limit),
+                    "prefix '" + prefix + "', limit " + limit);
+        }
+    }
+
+    @Test
+    void singleChildChainsShareTheirList() {
+        // "a", "ab", "abc" only lead to "abcd...", so they share its cached list;
+        // "abcd" ends a word itself, so it gets its own
+        Map<String, Long> words = new HashMap<>();
+        for (int i = 0; i < 30; i++) words.put("abcd" + (char) ('a' + i % 26) + i, (long) i);
+        words.put("abcd", 100L);
+        words.put("b", 1L);
+        AutocompleteTrie trie = build(words);
+
+        List<String> expected = bruteForce(words, "abcd", AutocompleteTrie.TOP_K);
+        assertEquals("abcd", expected.get(0));
+        for (String prefix : List.of("a", "ab", "abc", "abcd")) {
+            assertEquals(expected, trie.autocomplete(prefix, AutocompleteTrie.TOP_K), prefix);
+        }
+        assertEquals(bruteForce(words, "abcde", 5), trie.autocomplete("abcde", 5));
+        assertEquals(bruteForce(words, "", 12), trie.autocomplete("", 12));
+    }
+
+    @Test
+    void limitsAboveTopKRankTheWholeRange() {
+        Map<String, Long> words = new HashMap<>();
+        for (int i = 0; i < 50; i++) words.put("x" + i, (long) (i * 7 % 13));
+        AutocompleteTrie trie = build(words);
+
+        assertEquals(bruteForce(words, "x", 25), trie.autocomplete("x", 25));
+        assertEquals(bruteForce(words, "x", 100), trie.autocomplete("x", 100));
+        assertEquals(50, trie.autocomplete("x", 100).size());
+        assertEquals(bruteForce(words, "x", AutocompleteTrie.DEFAULT_LIMIT), trie.autocomplete("x"));
+        assertTrue(trie.autocomplete("x", 0).isEmpty());
+        assertTrue(trie.autocomplete("y").isEmpty());
+    }
+
+    @Test
+    void repeatedWordsAddUp() {
+        AutocompleteTrie trie = new AutocompleteTrie.Builder()
+                .add("java", 3).add("javascript", 5).add("java", 4).add("", 100)
+                .build();
+        assertEquals(List.of("java", "javascript"), trie.autocomplete("ja"));
+        assertEquals(2, trie.size());
+        assertTrue(AutocompleteTrie.empty().autocomplete("").isEmpty());
+    }
+
+    @Test
+    void accentedPrefixesMatchFoldedTerms() {
+        // Indexed terms are folded by the analyzer, so prefixes are folded the same way
+        AutocompleteTrie.Builder builder = new AutocompleteTrie.Builder();
+        for (String term : Analyzer.standard().terms("Café cafeteria Łódź")) builder.add(term, 1);
+        AutocompleteTrie trie = builder.build();
+
+        assertEquals(List.of("cafe", "cafeteria"), trie.autocomplete(Analyzer.fold("CAFÉ")));
+        assertEquals(List.of("lodz"), trie.autocomplete(Analyzer.fold("Łó")));
+    }
+
+    @Test
+    void saveAndLoadRoundTrip() throws IOException {
+        Random random = new Random(5);
+        Map<String, Long> words = randomWords(random, 2000);
+        words.put("ünïcödé", 7L);
+        AutocompleteTrie trie = build(words);
+        Path file = dir.resolve("vocabulary.ac");
+        trie.save(file);
+        AutocompleteTrie loaded = AutocompleteTrie.load(file);
+
+        assertEquals(trie.size(), loaded.size());
+        List<String> prefixes = new ArrayList<>(List.of("", "ü", "ünï"));
+        words.keySet().stream().sorted(Comparator.naturalOrder()).limit(300)
+                .forEach(word -> prefixes.add(word.substring(0, 1 + random.nextInt(word.length()))));
+        for (String prefix : prefixes) {
+            for (int limit : new int[] {1, AutocompleteTrie.TOP_K, 40}) {
+                assertEquals(trie.autocomplete(prefix, limit), loaded.autocomplete(prefix, limit), prefix);
+            }
+        }
+
+        AutocompleteTrie.empty().save(file);
+        assertEquals(0, AutocompleteTrie.load(file).size());
+        Files.write(file, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> AutocompleteTrie.load(file));
+    }
+}
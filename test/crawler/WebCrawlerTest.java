@@ -0,0 +1,198 @@
+package crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Crawls a synthetic link graph served by a local HttpServer instead of the web
+class WebCrawlerTest {
+    private LinkGraphServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) server.close();
+    }
+
+    @Test
+    void crawlsBreadthFirstToTheGivenDepth() throws IOException {
+        // Binary tree: page i links to 2i+1 and 2i+2
+        server = new LinkGraphServer(tree(63), 0, "localhost");
+        List<String> crawled = new CopyOnWriteArrayList<>();
+        crawler(crawled, 4, 1000).crawl(server.url(0), 3);
+
+        // Depth 3: the seed, its children and grandchildren, nothing deeper
+        assertEquals(pages(0, 1, 2, 3, 4, 5, 6), Set.copyOf(crawled));
+        assertEquals(7, crawled.size());
+        assertEquals(Set.of(0, 1, 2, 3, 4, 5, 6), server.requested().keySet());
+    }
+
+    @Test
+    void depthOneFetchesOnlyTheSeed() throws IOException {
+        server = new LinkGraphServer(tree(15), 0, "localhost");
+        List<String> crawled = new CopyOnWriteArrayList<>();
+        crawler(crawled, 4, 1000).crawl(server.url(0), 1);
+
+        assertEquals(List.of(server.url(0)), crawled);
+    }
+
+    @Test
+    void fetchesEachPageOnce() throws IOException {
+        // Every page links to every other page (and twice to the first), so each
+        // page is discovered many times over
+        int n = 20;
+        int[][] links = new int[n][];
+        for (int i = 0; i < n; i++) {
+            links[i] = new int[n + 1];
+            for (int j = 0; j < n; j++) links[i][j] = j;
+            links[i][n] = 0;
+        }
+        server = new LinkGraphServer(links, 0, "localhost");
+        List<String> crawled = new CopyOnWriteArrayList<>();
+        crawler(crawled, 8, 1000).crawl(server.url(0), 5);
+
+        assertEquals(n, crawled.size());
+        assertEquals(n, Set.copyOf(crawled).size());
+        assertEquals(n, server.requested().size());
+        server.requested().forEach((page, count) -> assertEquals(1, count.get(), "requests for page " + page));
+    }
+
+    @Test
+    void stopsAtMaxPages() throws IOException {
+        server = new LinkGraphServer(tree(1023), 0, "localhost");
+        List<String> crawled = new CopyOnWriteArrayList<>();
+        crawler(crawled, 8, 25).crawl(server.url(0), 10);
+
+        assertEquals(25, crawled.size());
+        assertEquals(25, Set.copyOf(crawled).size());
+        assertEquals(25, server.requested().size());
+    }
+
+    @Test
+    void capsConcurrentConnectionsPerHost() throws IOException {
+        // Pages alternate between two host names for the same server; each request is
+        // slow enough that the frontier always has more work than the cap allows
+        server = new LinkGraphServer(tree(63), 40, "localhost", "127.0.0.1");
+        List<String> crawled = new CopyOnWriteArrayList<>();
+        crawler(crawled, 2, 1000).crawl(server.url(0), 6);
+
+        assertEquals(63, Set.copyOf(crawled).size());
+        for (String host : List.of("localhost", "127.0.0.1")) {
+            int peak = server.peakConnections(host);
+            assertTrue(peak >= 1 && peak <= 2, host + " had " + peak + " concurrent requests");
+        }
+        assertTrue(server.peakConnections() > 2, "hosts were not crawled concurrently");
+    }
+
+    // Collects every saved URL; a page saved twice shows up twice
+    private static WebCrawler crawler(List<String> crawled, int connectionsPerHost, int maxPages) {
+        return new WebCrawler((url, title, content, links) -> crawled.add(url), 64, connectionsPerHost, 0, maxPages);
+    }
+
+    private Set<String> pages(int... ids) {
+        Set<String> urls = new HashSet<>();
+        for (int id : ids) urls.add(server.url(id));
+        return urls;
+    }
+
+    private static int[][] tree(int n) {
+        int[][] links = new int[n][];
+        for (int i = 0; i < n; i++) {
+            int children = Math.max(0, Math.min(2, n - (2 * i + 1)));
+            links[i] = new int[children + 1];
+            for (int c = 0; c < children; c++) links[i][c] = 2 * i + 1 + c;
+            links[i][children] = (i - 1) / 2;  // back to the parent (the root links to itself)
+        }
+        return links;
+    }
+
+    // Serves page i at /page/i with links to links[i]; page j lives on host
+    // hosts[j % hosts.length]. Counts requests per page and concurrent requests per host.
+    private static final class LinkGraphServer implements AutoCloseable {
+        private final HttpServer http;
+        private final int[][] links;
+        private final long delayMillis;
+        private final String[] hosts;
+        private final Map<Integer, AtomicInteger> requested = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        private final Map<String, Integer> peaks = new ConcurrentHashMap<>();
+        private final AtomicInteger activeTotal = new AtomicInteger();
+        private final AtomicInteger peakTotal = new AtomicInteger();
+
+        LinkGraphServer(int[][] links, long delayMillis, String... hosts) throws IOException {
+            this.links = links;
+            this.delayMillis = delayMillis;
+            this.hosts = hosts;
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            http.createContext("/page/", this::serve);
+            http.start();
+        }
+
+        String url(int page) {
+            return "http://" + hosts[page % hosts.length] + ":" + http.getAddress().getPort() + "/page/" + page;
+        }
+
+        Map<Integer, AtomicInteger> requested() {
+            return requested;
+        }
+
+        int peakConnections(String host) {
+            return peaks.getOrDefault(host, 0);
+        }
+
+        int peakConnections() {
+            return peakTotal.get();
+        }
+
+        private void serve(HttpExchange exchange) throws IOException {
+            String host = exchange.getRequestHeaders().getFirst("Host").replaceFirst(":\\d+$", "");
+            int now = active.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+            peaks.merge(host, now, Math::max);
+            peakTotal.accumulateAndGet(activeTotal.incrementAndGet(), Math::max);
+            try {
+                int page = Integer.parseInt(exchange.getRequestURI().getPath().substring("/page/".length()));
+                requested.computeIfAbsent(page, p -> new AtomicInteger()).incrementAndGet();
+                if (delayMillis > 0) Thread.sleep(delayMillis);
+
+                StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head><body>");
+                html.append("<p>Synthetic page ").append(page).append("</p>");
+                for (int target : links[page]) html.append("<a href='").append(url(target)).append("'>link</a> ");
+                html.append("</body></html>");
+                byte[] body = html.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.sendResponseHeaders(503, -1);
+            } finally {
+                activeTotal.decrementAndGet();
+                active.get(host).decrementAndGet();
+                exchange.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            http.stop(0);
+        }
+    }
+}
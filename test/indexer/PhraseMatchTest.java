@@ -0,0 +1,143 @@
+package indexer;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.DBManager;
+import utils.Database;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Phrase and boolean queries end to end: pages saved to a scratch database,
+// indexed with positions into two shards, then searched
+class PhraseMatchTest {
+    // Random pages use only these words, which the hand-written pages never contain
+    private static final String[] VOCABULARY = {"alpha", "beta", "gamma", "delta", "epsilon"};
+    private static final int RANDOM_PAGES = 200;
+
+    @TempDir
+    static Path dir;
+
+    private static Indexer indexer;
+    private static final List<String[]> randomPages = new ArrayList<>();  // {url, title, body}
+
+    @BeforeAll
+    static void index() {
+        Database.configure(dir.resolve("phrases.db").toString());
+        DBManager.initDB();
+        DBManager.createInvertedIndexTable();
+        DBManager.createUserQueryTable();
+
+        page("bora-bora", "Islands", "Bora Bora island");
+        page("bora-split", "Islands", "bora island bora");
+        page("bora-once", "Islands", "bora");
+        page("bora-three", "Islands", "bora bora bora");
+        page("java-title", "Learn Java", "programming is fun");
+        page("java-body", "Languages", "java programming for beginners");
+        page("new-york-title", "New York Guide", "city travel tips");
+        page("york-new-body", "Travel", "York is older than New Amsterdam");
+        page("kilo-only", "Codes", "kilo");
+        page("lima-only", "Codes", "lima");
+        page("kilo-lima", "Codes", "kilo and lima");
+
+        Random random = new Random(17);
+        for (int i = 0; i < RANDOM_PAGES; i++) {
+            String[] page = {"random-" + i, words(random, random.nextInt(5)), words(random, random.nextInt(30))};
+            randomPages.add(page);
+            page(page[0], page[1], page[2]);
+        }
+
+        indexer = new Indexer(Analyzer.standard(), true, Bm25.standard(), 2, 0, 0);
+        indexer.buildIndex();
+    }
+
+    @AfterAll
+    static void close() {
+        if (indexer != null) indexer.close();
+    }
+
+    private static void page(String name, String title, String body) {
+        DBManager.savePage("https://phrases.example/" + name, title, body, List.of());
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(random.nextInt(6) == 0 ? ", " : " ");
+            text.append(random.nextBoolean() ? VOCABULARY[random.nextInt(VOCABULARY.length)].toUpperCase()
+                    : VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return text.toString();
+    }
+
+    private static Set<String> search(String query) {
+        Set<String> names = new HashSet<>();
+        for (SearchResult result : indexer.search(query, 1000, SearchFilters.NONE)) {
+            names.add(result.url().substring("https://phrases.example/".length()));
+        }
+        return names;
+    }
+
+    @Test
+    void repeatedTermsNeedEveryOccurrence() {
+        assertEquals(Set.of("bora-bora", "bora-three"), search("\"bora bora\""));
+        assertEquals(Set.of("bora-three"), search("\"bora bora bora\""));
+        assertEquals(Set.of("bora-split"), search("\"island bora\""));
+        assertEquals(Set.of("bora-bora", "bora-split", "bora-once", "bora-three"), search("bora"));
+    }
+
+    @Test
+    void phrasesDoNotCrossFromTitleIntoBody() {
+        // "Learn Java" / "programming is fun": both words match, but not as a phrase
+        assertEquals(Set.of("java-title", "java-body"), search("java programming"));
+        assertEquals(Set.of("java-body"), search("\"java programming\""));
+        assertEquals(Set.of("java-title"), search("\"learn java\""));
+    }
+
+    @Test
+    void titleOnlyTermsAndPhrasesMatch() {
+        assertEquals(Set.of("new-york-title"), search("guide"));
+        assertEquals(Set.of("new-york-title"), search("\"new york\""));
+        assertEquals(Set.of("new-york-title"), search("\"new york\" city"));
+        assertEquals(Set.of("york-new-body"), search("york -\"new york\""));
+        assertEquals(Set.of(), search("\"york guide city\""));  // title then body
+    }
+
+    @Test
+    void orAbsorbedByARequiredTermKeepsItRequired() {
+        // "kilo OR lima kilo" is just "kilo": a page with only lima must not match
+        assertEquals(Set.of("kilo-only", "kilo-lima"), search("kilo OR lima kilo"));
+        assertEquals(Set.of("kilo-only", "kilo-lima"), search("kilo kilo OR lima"));
+        assertEquals(Set.of("kilo-only", "lima-only", "kilo-lima"), search("kilo OR lima"));
+        assertEquals(Set.of("kilo-lima"), search("kilo lima OR kilo lima"));
+    }
+
+    @Test
+    void matchesATokenScan() {
+        Analyzer analyzer = Analyzer.standard();
+        Random random = new Random(23);
+        for (int run = 0; run < 300; run++) {
+            List<String> phrase = new ArrayList<>();
+            int length = 2 + random.nextInt(2);
+            for (int i = 0; i < length; i++) phrase.add(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+
+            Set<String> expected = new HashSet<>();
+            for (String[] page : randomPages) {
+                if (Collections.indexOfSubList(analyzer.terms(page[2]), phrase) >= 0
+                        || Collections.indexOfSubList(analyzer.terms(page[1]), phrase) >= 0) {
+                    expected.add(page[0]);
+                }
+            }
+            assertEquals(expected, search("\"" + String.join(" ", phrase) + "\""), String.join(" ", phrase));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package indexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+    private static final IndexSnapshot SNAPSHOT = snapshot(1);
+    private static final QueryCache.Hits HITS = new QueryCache.Hits(new int[] {3, 1}, new float[] {2f, 1f});
+
+    private static IndexSnapshot snapshot(long generation) {
+        return new IndexSnapshot(generation, List.of(), new BitSet(), 0, DocMetadata.empty(), List.of());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        QueryCache cache = new QueryCache(2, 0);
+        cache.put("a", SNAPSHOT, HITS);
+        cache.put("b", SNAPSHOT, HITS);
+        assertSame(HITS, cache.get("a", SNAPSHOT));  // b is now the eldest
+        cache.put("c", SNAPSHOT, HITS);
+
+        assertNull(cache.get("b", SNAPSHOT));
+        assertSame(HITS, cache.get("a", SNAPSHOT));
+        assertSame(HITS, cache.get("c", SNAPSHOT));
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    void entriesOfAnotherSnapshotMiss() {
+        QueryCache cache = new QueryCache(10, 0);
+        cache.put("a", SNAPSHOT, HITS);
+
+        assertNull(cache.get("a", snapshot(2)));
+        assertNull(cache.get("a", SNAPSHOT));  // dropped on the mismatch
+        assertEquals(1, cache.invalidations());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        QueryCache cache = new QueryCache(10, 50);
+        cache.put("a", SNAPSHOT, HITS);
+        assertSame(HITS, cache.get("a", SNAPSHOT));
+
+        Thread.sleep(80);
+        assertNull(cache.get("a", SNAPSHOT));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void withoutTtlEntriesStay() throws InterruptedException {
+        QueryCache cache = new QueryCache(10, 0);
+        cache.put("a", SNAPSHOT, HITS);
+        Thread.sleep(20);
+        assertSame(HITS, cache.get("a", SNAPSHOT));
+    }
+
+    @Test
+    void sizeZeroDisablesCaching() {
+        QueryCache cache = new QueryCache(0, 0);
+        cache.put("a", SNAPSHOT, HITS);
+        assertNull(cache.get("a", SNAPSHOT));
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache(10, -1));
+    }
+}
@@ -0,0 +1,294 @@
+package indexer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Round trips through SegmentWriter and Segment: postings, skip blocks, positions and norms
+class SegmentTest {
+    private static final int DOCS = 2000;
+
+    @TempDir
+    Path dir;
+
+    private int[] docIds;  // ascending, with gaps
+    private int[] lengths;
+    private int[] titleLengths;
+    private TreeMap<String, Postings> terms;
+
+    // One term's expected postings; positions[i] holds the positions of docs[i]
+    private record Postings(int[] docs, int[] freqs, int[][] positions) {}
+
+    @BeforeEach
+    void generate() {
+        Random random = new Random(42);
+        docIds = new int[DOCS];
+        lengths = new int[DOCS];
+        titleLengths = new int[DOCS];
+        int id = 7;
+        for (int i = 0; i < DOCS; i++) {
+            id += 1 + (random.nextInt(4) == 0 ? random.nextInt(50) : 0);
+            docIds[i] = id;
+            lengths[i] = random.nextInt(5000);
+            titleLengths[i] = random.nextInt(30);
+        }
+        terms = new TreeMap<>();
+        terms.put("all", postings(random, 1.0));           // one posting per doc: many blocks
+        terms.put("block", postings(random, 0.064));       // about one block
+        terms.put("common", postings(random, 0.4));
+        terms.put("rare", postings(random, 0.005));        // fits in one block, no skip entries
+        terms.put("title:all", postings(random, 1.0));
+        terms.put("zzé", postings(random, 0.2));      // non-ASCII sorts after ASCII
+    }
+
+    private Postings postings(Random random, double share) {
+        List<Integer> docs = new ArrayList<>();
+        for (int docId : docIds) {
+            if (random.nextDouble() < share) docs.add(docId);
+        }
+        if (docs.isEmpty()) docs.add(docIds[DOCS / 2]);
+        int[] ids = docs.stream().mapToInt(Integer::intValue).toArray();
+        int[] freqs = new int[ids.length];
+        int[][] positions = new int[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            freqs[i] = 1 + (random.nextInt(10) == 0 ? random.nextInt(300) : random.nextInt(3));
+            positions[i] = new int[freqs[i]];
+            int position = random.nextInt(5);
+            for (int p = 0; p < freqs[i]; p++) {
+                positions[i][p] = position;
+                position += 1 + random.nextInt(random.nextInt(20) == 0 ? 100_000 : 40);  // some need 3-byte varints
+            }
+        }
+        return new Postings(ids, freqs, positions);
+    }
+
+    private Segment write(boolean withPositions) throws IOException {
+        Path path = dir.resolve(withPositions ? "positions.seg" : "plain.seg");
+        try (SegmentWriter writer = new SegmentWriter(path, withPositions)) {
+            for (int i = 0; i < DOCS; i++) {
+                writer.addDocument(docIds[i], lengths[i], titleLengths[i], "https://example.com/" + docIds[i]);
+            }
+            for (var entry : terms.entrySet()) {
+                Postings expected = entry.getValue();
+                writer.startTerm(entry.getKey());
+                for (int i = 0; i < expected.docs().length; i++) {
+                    if (withPositions) {
+                        writer.addPosting(expected.docs()[i], expected.positions()[i], 0, expected.freqs()[i]);
+                    } else {
+                        writer.addPosting(expected.docs()[i], expected.freqs()[i]);
+                    }
+                }
+            }
+        }
+        return Segment.open(path);
+    }
+
+    @Test
+    void postingsRoundTrip() throws IOException {
+        for (boolean withPositions : new boolean[] {true, false}) {
+            Segment segment = write(withPositions);
+            assertEquals(withPositions, segment.hasPositions());
+            assertEquals(terms.size(), segment.termCount());
+            assertEquals(DOCS, segment.docCount());
+
+            Iterator<Segment.TermInfo> dictionary = segment.terms();
+            for (var entry : terms.entrySet()) {
+                Postings expected = entry.getValue();
+                Segment.TermInfo info = segment.lookup(entry.getKey());
+                assertNotNull(info, entry.getKey());
+                assertEquals(entry.getKey(), dictionary.next().term());
+                assertEquals(expected.docs().length, info.df());
+                assertEquals(Arrays.stream(expected.freqs()).max().getAsInt(), info.maxTf());
+
+                PostingsIterator postings = segment.postings(info);
+                int[] positions = new int[512];
+                for (int i = 0; i < expected.docs().length; i++) {
+                    assertEquals(expected.docs()[i], postings.nextDoc());
+                    assertEquals(expected.freqs()[i], postings.freq());
+                    int count = postings.positions(positions);
+                    if (withPositions) {
+                        assertArrayEquals(expected.positions()[i], Arrays.copyOf(positions, count));
+                    } else {
+                        assertEquals(0, count);
+                    }
+                }
+                assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+                assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+            }
+            assertFalse(dictionary.hasNext());
+            assertNull(segment.lookup("missing"));
+            assertNull(segment.lookup("al"));
+        }
+    }
+
+    @Test
+    void docTableRoundTrip() throws IOException {
+        Segment segment = write(true);
+        for (int i = 0; i < DOCS; i++) {
+            assertEquals(docIds[i], segment.docIdAt(i));
+            assertEquals(lengths[i], segment.docLengthAt(i));
+            assertEquals(titleLengths[i], segment.titleLengthAt(i));
+            assertEquals("https://example.com/" + docIds[i], segment.url(docIds[i]));
+            assertTrue(segment.contains(docIds[i]));
+        }
+        assertFalse(segment.contains(docIds[0] - 1));
+        assertFalse(segment.contains(docIds[DOCS - 1] + 1));
+        assertNull(segment.url(docIds[0] - 1));
+        assertEquals(Arrays.stream(lengths).asLongStream().sum(), segment.totalLength());
+        assertEquals(Arrays.stream(titleLengths).asLongStream().sum(), segment.totalTitleLength());
+    }
+
+    @Test
+    void normsForFirstAndLastDocs() throws IOException {
+        lengths[0] = 3;
+        titleLengths[0] = 0;
+        lengths[DOCS - 1] = 1_000_000;
+        titleLengths[DOCS - 1] = 17;
+        Segment segment = write(false);
+
+        for (int i : new int[] {0, 1, DOCS / 2, DOCS - 2, DOCS - 1}) {
+            assertEquals(Bm25.encodeLength(lengths[i]) & 0xFF, segment.norm(docIds[i], false), "body of doc " + i);
+            assertEquals(Bm25.encodeLength(titleLengths[i]) & 0xFF, segment.norm(docIds[i], true), "title of doc " + i);
+        }
+        assertEquals(3, Bm25.decodeLength((byte) segment.norm(docIds[0], false)));
+
+        // Norms are per slot: a scorer walking a term's postings finds each doc's slot
+        for (var entry : terms.entrySet()) {
+            boolean title = Segment.isTitleTerm(entry.getKey());
+            int slot = 0;
+            for (int doc : entry.getValue().docs()) {
+                slot = segment.slotFrom(slot, doc);
+                assertEquals(doc, segment.docIdAt(slot));
+                assertEquals(segment.norm(doc, title), segment.normAt(slot, title));
+            }
+        }
+        assertEquals(17, Bm25.decodeLength((byte) segment.norm(docIds[DOCS - 1], true)));
+
+        // minNorm is the shortest field among the term's docs
+        for (var entry : terms.entrySet()) {
+            boolean title = Segment.isTitleTerm(entry.getKey());
+            int min = 255;
+            for (int doc : entry.getValue().docs()) min = Math.min(min, segment.norm(doc, title));
+            assertEquals(min, segment.lookup(entry.getKey()).minNorm(), entry.getKey());
+        }
+    }
+
+    @Test
+    void advanceAcrossBlocks() throws IOException {
+        Segment segment = write(true);
+        Random random = new Random(7);
+        for (var entry : terms.entrySet()) {
+            int[] docs = entry.getValue().docs();
+
+            // Every block's last doc, the doc after it and the gaps around them
+            List<Integer> targets = new ArrayList<>();
+            for (int b = Segment.BLOCK_SIZE - 1; b < docs.length; b += Segment.BLOCK_SIZE) {
+                targets.addAll(List.of(docs[b] - 1, docs[b], docs[b] + 1));
+                if (b + 1 < docs.length) targets.add(docs[b + 1]);
+            }
+            checkAdvance(segment, entry.getKey(), docs, targets);
+
+            // Random ascending targets, short and long jumps mixed
+            for (int run = 0; run < 20; run++) {
+                List<Integer> jumps = new ArrayList<>();
+                int target = 0;
+                while (target < docs[docs.length - 1]) {
+                    target += 1 + random.nextInt(random.nextBoolean() ? 5 : 2000);
+                    jumps.add(target);
+                }
+                checkAdvance(segment, entry.getKey(), docs, jumps);
+            }
+        }
+    }
+
+    private static void checkAdvance(Segment segment, String term, int[] docs, List<Integer> targets) {
+        PostingsIterator postings = segment.postings(segment.lookup(term));
+        for (int target : targets) {
+            int expected = firstAtLeast(docs, Math.max(target, postings.docId()));
+            assertEquals(expected, postings.advance(target), term + " advance(" + target + ")");
+        }
+        assertEquals(PostingsIterator.NO_MORE_DOCS, postings.advance(docs[docs.length - 1] + 1));
+        assertEquals(PostingsIterator.NO_MORE_DOCS, postings.advance(Integer.MAX_VALUE - 1));
+        assertEquals(PostingsIterator.NO_MORE_DOCS, postings.nextDoc());
+    }
+
+    @Test
+    void advanceToCurrentOrEarlierStays() throws IOException {
+        Segment segment = write(false);
+        int[] docs = terms.get("all").docs();
+        PostingsIterator postings = segment.postings(segment.lookup("all"));
+        assertEquals(docs[300], postings.advance(docs[300]));
+        assertEquals(docs[300], postings.advance(docs[10]));
+        assertEquals(docs[300], postings.advance(docs[300]));
+        assertEquals(docs[301], postings.nextDoc());
+    }
+
+    @Test
+    void positionsAfterSkipping() throws IOException {
+        Segment segment = write(true);
+        Random random = new Random(11);
+        int[] positions = new int[512];
+        for (var entry : terms.entrySet()) {
+            Postings expected = entry.getValue();
+            int[] docs = expected.docs();
+            for (int run = 0; run < 10; run++) {
+                PostingsIterator postings = segment.postings(segment.lookup(entry.getKey()));
+                int i = -1;
+                while (true) {
+                    // Skip ahead (by advance or by nextDoc without reading positions),
+                    // sometimes several blocks at a time
+                    int skip = 1 + random.nextInt(random.nextInt(4) == 0 ? 400 : 3);
+                    i += skip;
+                    if (i >= docs.length) break;
+                    int doc = random.nextBoolean() ? postings.advance(docs[i]) : nextDocs(postings, skip);
+                    assertEquals(docs[i], doc);
+                    if (random.nextInt(3) == 0) continue;  // leave this doc's positions unread
+                    int count = postings.positions(positions);
+                    assertArrayEquals(expected.positions()[i], Arrays.copyOf(positions, count),
+                            entry.getKey() + " doc " + docs[i]);
+                    assertEquals(count, postings.positions(positions));  // reading twice is fine
+                }
+            }
+        }
+    }
+
+    private static int nextDocs(PostingsIterator postings, int count) {
+        int doc = postings.docId();
+        for (int i = 0; i < count; i++) doc = postings.nextDoc();
+        return doc;
+    }
+
+    private static int firstAtLeast(int[] docs, int target) {
+        int i = Arrays.binarySearch(docs, target);
+        if (i < 0) i = -i - 1;
+        return i < docs.length ? docs[i] : PostingsIterator.NO_MORE_DOCS;
+    }
+
+    @Test
+    void rejectsOutOfOrderInput() throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(dir.resolve("bad.seg"), false)) {
+            writer.addDocument(5, 1, 1, "a");
+            assertThrows(IllegalArgumentException.class, () -> writer.addDocument(5, 1, 1, "b"));
+            writer.addDocument(9, 1, 1, "c");
+            writer.startTerm("b");
+            writer.addPosting(5, 1);
+            assertThrows(IllegalArgumentException.class, () -> writer.addPosting(5, 1));
+            assertThrows(IllegalArgumentException.class, () -> writer.startTerm("a"));
+            writer.startTerm("c");
+            writer.addPosting(7, 1);  // no document 7: caught when the term is finished
+            assertThrows(IllegalArgumentException.class, () -> writer.startTerm("d"));
+            writer.abort();
+        }
+    }
+}
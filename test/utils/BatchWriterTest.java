@@ -0,0 +1,111 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(30)
+class BatchWriterTest {
+    private final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Integer, Exception> failed = new ConcurrentHashMap<>();
+
+    @Test
+    void writesEverythingInBatches() {
+        CountDownLatch release = new CountDownLatch(1);
+        BatchWriter<Integer> writer = new BatchWriter<>("test-writer", 1000, 10, batch -> {
+            release.await();  // let the queue fill up so batches are full
+            batchSizes.add(batch.size());
+            written.addAll(batch);
+        }, failed::put);
+        for (int i = 0; i < 95; i++) assertTrue(writer.put(i));
+        release.countDown();
+        writer.flush();
+
+        assertEquals(95, written.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10), batchSizes.toString());
+        assertTrue(batchSizes.size() < 95, "entries were not batched");
+        writer.close();
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    void badEntryOnlyLosesItself() {
+        BatchWriter<Integer> writer = new BatchWriter<>("test-writer", 1000, 50, batch -> {
+            if (batch.contains(13)) throw new IllegalStateException("bad entry");
+            written.addAll(batch);
+        }, failed::put);
+        for (int i = 0; i < 40; i++) writer.put(i);
+        writer.close();
+
+        assertEquals(39, written.size());
+        assertFalse(written.contains(13));
+        assertEquals(List.of(13), List.copyOf(failed.keySet()));
+        assertInstanceOf(IllegalStateException.class, failed.get(13));
+    }
+
+    @Test
+    void keepsWritingAfterFailures() {
+        BatchWriter<Integer> writer = new BatchWriter<>("test-writer", 1000, 5, batch -> {
+            if (batch.get(0) < 10) throw new RuntimeException("not yet");
+            written.addAll(batch);
+        }, failed::put);
+        for (int i = 0; i < 10; i++) writer.put(i);
+        writer.flush();
+        for (int i = 10; i < 20; i++) writer.put(i);
+        writer.close();
+
+        assertEquals(10, failed.size());
+        assertEquals(10, written.size());
+    }
+
+    @Test
+    void flushAndCloseReturnWhenTheWriterDied() {
+        BatchWriter<Integer> writer = new BatchWriter<>("test-writer", 1000, 5, batch -> {
+            throw new AssertionError("writer thread dies");
+        }, failed::put);
+        writer.put(1);
+        writer.flush();  // released by the dying batch
+        writer.flush();  // returns once the writer is dead
+
+        // Nothing would write them, so they are reported as not queued
+        assertFalse(writer.put(2));
+        assertFalse(writer.offer(3));
+        writer.close();
+        assertFalse(writer.put(4));
+        assertFalse(writer.offer(5));
+    }
+
+    @Test
+    void closedWriterQueuesNothing() {
+        BatchWriter<Integer> writer = new BatchWriter<>("test-writer", 10, 5, written::addAll, failed::put);
+        writer.put(1);
+        writer.close();
+        writer.close();  // idempotent
+
+        assertFalse(writer.put(2));
+        assertFalse(writer.offer(3));
+        assertEquals(List.of(1), written);
+    }
+
+    @Test
+    void interruptedPutReportsTheLoss() {
+        BatchWriter<Integer> writer = new BatchWriter<>("test-writer", 10, 5, written::addAll, failed::put);
+        writer.put(1);
+
+        Thread.currentThread().interrupt();
+        assertFalse(writer.put(2));
+        assertTrue(Thread.interrupted(), "interrupt flag was cleared");
+
+        writer.close();
+        assertEquals(List.of(1), written);
+    }
+}
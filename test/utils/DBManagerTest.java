@@ -0,0 +1,38 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DBManagerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyConfiguredDatabaseGetsTheSchema() throws Exception {
+        for (String name : List.of("first.db", "second.db", "first.db")) {
+            Database.configure(dir.resolve(name).toString());
+            DBManager.initDB();
+            DBManager.savePage("https://schema.example/" + name, "Title", "content", List.of());
+
+            int pages = Database.read(db -> {
+                try (ResultSet rs = db.prepare("SELECT COUNT(*) FROM pages").executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : -1;
+                }
+            });
+            assertTrue(pages >= 1, name);
+            int metaTables = Database.read(db -> {
+                String sql = "SELECT COUNT(*) FROM sqlite_master WHERE name IN ('index_meta', 'index_tombstones')";
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : -1;
+                }
+            });
+            assertEquals(2, metaTables, name);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserProfilesTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void database() {
+        Database.configure(dir.resolve("profiles.db").toString());
+        DBManager.initDB();
+        DBManager.createUserQueryTable();
+    }
+
+    private static UserProfiles profiles() {
+        return new UserProfiles(query -> List.of(query.split(" ")));
+    }
+
+    private static List<String> terms(UserProfile profile) {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < profile.size(); i++) terms.add(profile.term(i));
+        return terms;
+    }
+
+    @Test
+    void updatesAreCachedAndRecordedProfilesReload() {
+        UserProfiles profiles = profiles();
+        profiles.record("alice", "java streams");
+        assertEquals(List.of("java", "streams"), terms(profiles.get("alice")).stream().sorted().toList());
+
+        UserProfile updated = profiles.update("alice", "java");
+        assertSame(updated, profiles.get("alice"));
+        assertEquals("java", updated.term(0));  // strongest first
+
+        assertEquals(List.of("java", "streams"), terms(profiles().get("alice")).stream().sorted().toList());
+        assertSame(UserProfile.EMPTY, profiles.get(null));
+    }
+
+    @Test
+    void unreadableProfilesAreNeitherCachedNorOverwritten() throws Exception {
+        profiles().record("alice", "java streams");
+        Database.write(db -> {
+            db.execute("UPDATE user_profiles SET profile = x'00ff'");  // undecodable
+            return null;
+        });
+
+        UserProfiles profiles = profiles();
+        assertNull(profiles.update("alice", "python"));
+        assertSame(UserProfile.EMPTY, profiles.get("alice"));
+        assertSame(UserProfile.EMPTY, profiles.record("alice", "python"));
+
+        // Nothing was written over the stored profile, and nothing empty was cached
+        byte[] stored = Database.read(db -> {
+            try (ResultSet rs = db.prepare("SELECT profile FROM user_profiles WHERE user_id = 'alice'").executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        });
+        assertArrayEquals(new byte[] {0x00, (byte) 0xff}, stored);
+        Database.write(db -> UserProfiles.save(db, "alice", UserProfile.EMPTY.withQuery(List.of("go"), 1)));
+        assertEquals(List.of("go"), terms(profiles.get("alice")));
+    }
+}
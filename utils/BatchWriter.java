@@ -0,0 +1,163 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// Background writer behind PageIngestor and QueryLog. Producers queue entries from
+// any thread; one writer thread drains them in batches of up to batchSize and hands
+// each batch to the sink (one transaction). A failed batch is retried one entry at
+// a time, so a bad entry only loses itself; entries that fail on their own go to
+// onFailure. flush() and close() wait for everything queued before them, and return
+// even if the writer thread has died. Once it has died or been closed, nothing more
+// is queued: put() and offer() return false.
+public final class BatchWriter<T> implements AutoCloseable {
+    private static final long LIVENESS_CHECK_MS = 1000;  // waits re-check that the writer is running this often
+
+    @FunctionalInterface
+    public interface Sink<T> {
+        void write(List<T> batch) throws Exception;
+    }
+
+    // An entry to write, or a control marker (flush/stop) carrying a latch
+    private record Entry<T>(T item, CountDownLatch done, boolean stop) {}
+
+    private final String name;
+    private final BlockingQueue<Entry<T>> queue;
+    private final int batchSize;
+    private final Sink<T> sink;
+    private final BiConsumer<T, Exception> onFailure;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    public BatchWriter(String name, int queueCapacity, int batchSize, Sink<T> sink,
+                       BiConsumer<T, Exception> onFailure) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.onFailure = onFailure;
+        this.writer = new Thread(this::run, name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Queue an entry, blocking while the queue is full (backpressure). Returns false
+    // when it was not queued: the caller was interrupted (the flag stays set), or the
+    // writer is closed or has died.
+    public boolean put(T item) {
+        if (closed) return false;
+        try {
+            return enqueue(new Entry<>(item, null, false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Queue an entry if there is room and the writer is running; never blocks
+    public boolean offer(T item) {
+        if (closed || !writer.isAlive()) return false;
+        return queue.offer(new Entry<>(item, null, false));
+    }
+
+    // Wait until everything queued so far is written
+    public void flush() {
+        awaitMarker(false);
+    }
+
+    // Writes what is queued, then stops the writer thread
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        awaitMarker(true);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // False if the writer has stopped, before or while waiting for room: nothing
+    // would ever take the entry
+    private boolean enqueue(Entry<T> entry) throws InterruptedException {
+        do {
+            if (!writer.isAlive()) return false;
+        } while (!queue.offer(entry, LIVENESS_CHECK_MS, TimeUnit.MILLISECONDS));
+        return true;
+    }
+
+    private void awaitMarker(boolean stop) {
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            if (!enqueue(new Entry<>(null, done, stop))) return;
+            while (!done.await(LIVENESS_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) return;  // nothing more will be written
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Entry<T>> batch = new ArrayList<>(batchSize);
+        List<T> items = new ArrayList<>(batchSize);
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                for (Entry<T> entry : batch) {
+                    if (entry.item() != null) items.add(entry.item());
+                }
+                write(items);
+            } finally {
+                // Markers are released even if writing failed, so waiters never hang
+                for (Entry<T> entry : batch) {
+                    if (entry.done() != null) entry.done().countDown();
+                    stop |= entry.stop();
+                }
+                batch.clear();
+                items.clear();
+            }
+        }
+    }
+
+    private void write(List<T> items) {
+        if (items.isEmpty()) return;
+        try {
+            sink.write(items);
+        } catch (Exception e) {
+            if (items.size() == 1) {
+                fail(items.get(0), e);
+                return;
+            }
+            System.out.println("⚠️ " + name + ": batch of " + items.size() + " failed, retrying one by one: "
+                    + e.getMessage());
+            for (T item : items) {
+                try {
+                    sink.write(List.of(item));
+                } catch (Exception single) {
+                    fail(item, single);
+                }
+            }
+        }
+    }
+
+    private void fail(T item, Exception e) {
+        try {
+            onFailure.accept(item, e);
+        } catch (RuntimeException ignored) {
+            // reporting must not stop the writer
+        }
+    }
+}
@@ -1,112 +1,174 @@
 package utils;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.Statement;
 import java.sql.SQLException;
 import java.sql.PreparedStatement;
-import java.net.URL;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
 import java.sql.ResultSet;
 
 public class DBManager {
-    private static final String DB_URL = "jdbc:sqlite:searchengine.db";
-    
-    public static Connection connect() {
+    private static String initializedPath = null;  // database whose schema is known to be current
+
+    // 1. Create tables (updated with link graph and pagerank columns) and migrate old schemas,
+    // once per database file (Database.configure may switch files within a process)
+    public static synchronized void initDB() {
+        String path = Database.path();
+        if (path.equals(initializedPath)) return;
         try {
-            return DriverManager.getConnection(DB_URL);
-        } catch (SQLException e) {
-            System.out.println("❌ Connection failed: " + e.getMessage());
-            return null;
-        }
-    }
+            Database.transaction(db -> {
+                String pagesSql = """
+                    CREATE TABLE IF NOT EXISTS pages (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        url TEXT UNIQUE,
+                        title TEXT,
+                        content TEXT,
+                        domain TEXT,
+                        pagerank REAL DEFAULT 1.0,-- ✅ PageRank score
+                        crawled_at DATETIME DEFAULT CURRENT_TIMESTAMP
+                    );
+                """;
 
-    // 1. Create tables (updated with links and pagerank columns)
-    public static void initDB() {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            Statement stmt = conn.createStatement();
-
-            String pagesSql = """
-                CREATE TABLE IF NOT EXISTS pages (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    url TEXT UNIQUE,
-                    title TEXT,
-                    content TEXT,
-                    domain TEXT,
-                    links TEXT,               -- ✅ stores outbound links
-                    pagerank REAL DEFAULT 1.0,-- ✅ PageRank score
-                    crawled_at DATETIME DEFAULT CURRENT_TIMESTAMP
-                );
-            """;
-
-            String invertedSql = """
-                CREATE TABLE IF NOT EXISTS inverted_index (
-                    term TEXT,
-                    url TEXT,
-                    score REAL
-                );
-            """;
-
-            stmt.execute(pagesSql);
-            stmt.execute(invertedSql);
-
-            System.out.println("✅ Tables 'pages' and 'inverted_index' are ready.");
+                String invertedSql = """
+                    CREATE TABLE IF NOT EXISTS inverted_index (
+                        term TEXT,
+                        url TEXT,
+                        score REAL
+                    );
+                """;
+
+                // Persisted index: per-document snippets and the generation marker; postings,
+                // vocabulary and document lengths live in segment files (see indexer.Segment)
+                String indexSql = """
+                    CREATE TABLE IF NOT EXISTS index_docs (doc_id INTEGER PRIMARY KEY, url TEXT, snippet TEXT);
+                    CREATE TABLE IF NOT EXISTS index_meta (key TEXT PRIMARY KEY, value TEXT);
+                    CREATE TABLE IF NOT EXISTS index_tombstones (doc_id INTEGER PRIMARY KEY);
+                """;
+
+                db.execute(pagesSql);
+                db.execute(invertedSql);
+                migrate(db);
+                migrateIndexTables(db);
+                for (String ddl : (indexSql + LinkStore.SCHEMA_SQL).split(";")) {
+                    if (!ddl.isBlank()) db.execute(ddl);
+                }
+                migrateLinks(db);
+                db.execute("CREATE INDEX IF NOT EXISTS idx_inverted_term ON inverted_index(term)");
+                db.execute("CREATE INDEX IF NOT EXISTS idx_pages_crawled_at ON pages(crawled_at)");
+                // Replaced or deleted pages leave their old id behind for the incremental indexer.
+                // INSERT OR REPLACE fires this too because Database enables recursive_triggers.
+                db.execute("""
+                    CREATE TRIGGER IF NOT EXISTS pages_tombstone AFTER DELETE ON pages
+                    BEGIN
+                        INSERT OR IGNORE INTO index_tombstones (doc_id) VALUES (old.id);
+                    END
+                """);
+                return null;
+            });
+            initializedPath = path;
+
+            System.out.println("✅ Tables 'pages', 'inverted_index' and index metadata are ready.");
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    // 2. Save a page with outbound links
+    // Older databases were created without some columns; add whatever is missing
+    private static void migrate(Database.Handle db) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = db.prepare("PRAGMA table_info(pages)").executeQuery()) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        Map<String, String> required = new LinkedHashMap<>();
+        required.put("domain", "TEXT");
+        required.put("pagerank", "REAL DEFAULT 1.0");
+        required.put("crawled_at", "DATETIME");
+        for (Map.Entry<String, String> column : required.entrySet()) {
+            if (!columns.contains(column.getKey())) {
+                db.execute("ALTER TABLE pages ADD COLUMN " + column.getKey() + " " + column.getValue());
+                System.out.println("✅ '" + column.getKey() + "' column added to pages table.");
+            }
+        }
+    }
+
+    // Links used to be one comma-joined TEXT column per page: move them into the edge
+    // tables (a url containing a comma was already split there, and stays that way),
+    // then drop the column
+    private static void migrateLinks(Database.Handle db) throws SQLException {
+        boolean legacyLinks = false;
+        try (ResultSet rs = db.prepare("PRAGMA table_info(pages)").executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString("name").equals("links")) legacyLinks = true;
+            }
+        }
+        if (!legacyLinks) return;
+
+        int pages = 0;
+        String sql = "SELECT url, links FROM pages WHERE links IS NOT NULL AND links <> ''";
+        try (ResultSet rs = db.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                List<String> links = new ArrayList<>();
+                for (String link : rs.getString(2).split(",")) links.add(link.trim());
+                LinkStore.replaceLinks(db, rs.getString(1), links);
+                pages++;
+            }
+        }
+        db.execute("ALTER TABLE pages DROP COLUMN links");
+        System.out.println("✅ Moved the links of " + pages + " pages into the 'links' edge table.");
+    }
+
+    // Index tables from before segment files were keyed by url; they only hold
+    // derived data, so drop them and let the next build recreate them
+    private static void migrateIndexTables(Database.Handle db) throws SQLException {
+        boolean legacyDocs = false;
+        try (ResultSet rs = db.prepare("PRAGMA table_info(index_docs)").executeQuery()) {
+            while (rs.next()) {
+                if (rs.getString("name").equals("length")) legacyDocs = true;
+            }
+        }
+        if (legacyDocs) {
+            db.execute("DROP TABLE index_docs");
+            db.execute("DROP TABLE IF EXISTS index_terms");
+            System.out.println("✅ Dropped pre-segment index tables; the index will be rebuilt.");
+        }
+    }
+
+    // 2. Save a single page with outbound links (bulk crawls should go through PageIngestor)
     public static void savePage(String url, String title, String content, List<String> links) {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            String domain = new URL(url).getHost();
-            String sql = "INSERT OR REPLACE INTO pages (url, title, content, domain, links) VALUES (?, ?, ?, ?, ?)";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, url);
-            pstmt.setString(2, title);
-            pstmt.setString(3, content);
-            pstmt.setString(4, domain);
-            pstmt.setString(5, String.join(",", links));
-            pstmt.executeUpdate();
+        try {
+            Database.transaction(db -> {
+                PreparedStatement pstmt = db.prepare(PageIngestor.INSERT_PAGE_SQL);
+                pstmt.setString(1, url);
+                pstmt.setString(2, title);
+                pstmt.setString(3, content);
+                pstmt.setString(4, PageIngestor.domainOf(url));
+                pstmt.executeUpdate();
+                LinkStore.replaceLinks(db, url, links);
+                return null;
+            });
             System.out.println("✅ Saved page: " + url);
         } catch (Exception e) {
             System.out.println("⚠️ DB insert failed for: " + url);
         }
-        
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:searchengine.db");
-     Statement stmt = conn.createStatement()) {
-    stmt.executeUpdate("ALTER TABLE pages ADD COLUMN pagerank REAL DEFAULT 0.0");
-    System.out.println("✅ 'pagerank' column added to pages table.");
-} catch (SQLException e) {
-    if (!e.getMessage().contains("duplicate column")) {
-        e.printStackTrace();  // ignore if already added
-    }
-}
-
     }
 
     // 3. Create inverted index table
     public static void createInvertedIndexTable() {
-    try (Connection conn = connect();
-         Statement stmt = conn.createStatement()) {
-
-        String sql = "CREATE TABLE IF NOT EXISTS pages (" +
-             "url TEXT PRIMARY KEY, " +
-             "title TEXT, " +
-             "content TEXT, " +
-             "pagerank REAL DEFAULT 0" +     // ✅ Add this line
-             ");";
-
-        stmt.execute(sql);
-    } catch (SQLException e) {
-        System.out.println("❌ Failed to create inverted_index table: " + e.getMessage());
+        try {
+            Database.write(db -> {
+                db.execute("CREATE TABLE IF NOT EXISTS inverted_index (term TEXT, url TEXT, score REAL)");
+                return null;
+            });
+        } catch (SQLException e) {
+            System.out.println("❌ Failed to create inverted_index table: " + e.getMessage());
+        }
     }
-}
-
-
 
     // 4. User query table setup
     public static void createUserQueryTable() {
@@ -114,9 +176,17 @@ public class DBManager {
                      "user_id TEXT, " +
                      "query TEXT, " +
                      "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP)";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+        try {
+            Database.write(db -> {
+                db.execute(sql);
+                db.execute("CREATE INDEX IF NOT EXISTS idx_user_queries_user ON user_queries(user_id, timestamp)");
+                // Decayed term-weight vector per user, kept up to date by UserProfiles
+                db.execute("CREATE TABLE IF NOT EXISTS user_profiles (" +
+                           "user_id TEXT PRIMARY KEY, " +
+                           "updated_at INTEGER, " +
+                           "profile BLOB)");
+                return null;
+            });
             System.out.println("📘 User queries table ready.");
         } catch (SQLException e) {
             System.out.println("❌ Error creating user query table: " + e.getMessage());
@@ -125,12 +195,13 @@ public class DBManager {
 
     // 5. Save user query
     public static void saveUserQuery(String userId, String query) {
-        String sql = "INSERT INTO user_queries (user_id, query) VALUES (?, ?)";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, userId);
-            pstmt.setString(2, query);
-            pstmt.executeUpdate();
+        try {
+            Database.write(db -> {
+                PreparedStatement pstmt = db.prepare("INSERT INTO user_queries (user_id, query) VALUES (?, ?)");
+                pstmt.setString(1, userId);
+                pstmt.setString(2, query);
+                return pstmt.executeUpdate();
+            });
         } catch (SQLException e) {
             System.out.println("❌ Error saving user query: " + e.getMessage());
         }
@@ -139,36 +210,43 @@ public class DBManager {
     // 6. Get user query history
     public static List<String> getUserQueryHistory(String userId) {
         List<String> queries = new ArrayList<>();
-        String sql = "SELECT query FROM user_queries WHERE user_id = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                queries.add(rs.getString("query").toLowerCase());
-            }
+        try {
+            Database.read(db -> {
+                PreparedStatement pstmt = db.prepare("SELECT query FROM user_queries WHERE user_id = ?");
+                pstmt.setString(1, userId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        queries.add(rs.getString("query").toLowerCase());
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
             System.out.println("❌ Failed to fetch user query history: " + e.getMessage());
         }
         return queries;
     }
 
-    // 7. Fetch URL → Outbound Links map for PageRank
+    // 7. Fetch URL → Outbound Links map (PageRank itself reads the int edges, see indexer.LinkGraph)
     public static Map<String, List<String>> getAllPagesWithLinks() {
         Map<String, List<String>> linkGraph = new HashMap<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            ResultSet rs = conn.createStatement().executeQuery("SELECT url, links FROM pages");
-            while (rs.next()) {
-                String url = rs.getString("url");
-                String linkStr = rs.getString("links");
-                List<String> outLinks = new ArrayList<>();
-                if (linkStr != null && !linkStr.isBlank()) {
-                    for (String link : linkStr.split(",")) {
-                        outLinks.add(link.trim());
+        try {
+            Database.read(db -> {
+                String sql = """
+                    SELECT p.url, t.url FROM pages p
+                    LEFT JOIN urls s ON s.url = p.url
+                    LEFT JOIN links l ON l.from_id = s.id
+                    LEFT JOIN urls t ON t.id = l.to_id
+                """;
+                try (ResultSet rs = db.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        List<String> outLinks = linkGraph.computeIfAbsent(rs.getString(1), k -> new ArrayList<>());
+                        String link = rs.getString(2);
+                        if (link != null) outLinks.add(link);
                     }
                 }
-                linkGraph.put(url, outLinks);
-            }
+                return null;
+            });
         } catch (Exception e) {
             System.out.println("❌ Error fetching links: " + e.getMessage());
         }
@@ -177,12 +255,13 @@ public class DBManager {
 
     // 8. Update PageRank score for a page
     public static void updatePageRank(String url, double score) {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            String sql = "UPDATE pages SET pagerank = ? WHERE url = ?";
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            pstmt.setDouble(1, score);
-            pstmt.setString(2, url);
-            pstmt.executeUpdate();
+        try {
+            Database.write(db -> {
+                PreparedStatement pstmt = db.prepare("UPDATE pages SET pagerank = ? WHERE url = ?");
+                pstmt.setDouble(1, score);
+                pstmt.setString(2, url);
+                return pstmt.executeUpdate();
+            });
         } catch (Exception e) {
             System.out.println("❌ Failed to update PageRank: " + e.getMessage());
         }
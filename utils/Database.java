@@ -0,0 +1,216 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Single entry point for SQLite access. Keeps one writer connection (writes are
+// serialized, as SQLite only allows one writer anyway) and a small pool of
+// query-only reader connections. Connections are opened lazily, tuned once, and
+// keep their prepared statements cached for reuse.
+public final class Database {
+    private static final int READER_POOL_SIZE =
+            Math.min(8, Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    private static String path = System.getProperty("searchengine.db", "searchengine.db");
+    private static long generation = 0;
+    private static Handle writer;
+    private static final ReentrantLock writeLock = new ReentrantLock();
+    private static final BlockingQueue<Handle> idleReaders = new LinkedBlockingQueue<>();
+    private static final List<Handle> readers = new ArrayList<>();
+
+    private Database() {}
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Handle db) throws SQLException;
+    }
+
+    // A pooled connection plus its statement cache. Statements from prepare() are
+    // owned by the handle: close the ResultSets, never the statements.
+    public static final class Handle {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final long generation;
+
+        private Handle(Connection conn, long generation) {
+            this.conn = conn;
+            this.generation = generation;
+        }
+
+        public Connection connection() {
+            return conn;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        public void execute(String sql) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+            }
+        }
+
+        private void close() {
+            try {
+                for (PreparedStatement ps : statements.values()) ps.close();
+                conn.close();
+            } catch (SQLException e) {
+                System.out.println("⚠️ Error closing connection: " + e.getMessage());
+            }
+        }
+    }
+
+    // Point every component at a different database file; closes open connections
+    public static void configure(String dbPath) {
+        writeLock.lock();
+        try {
+            synchronized (Database.class) {
+                closeAll();
+                path = dbPath;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public static synchronized String path() {
+        return path;
+    }
+
+    public static synchronized String url() {
+        return "jdbc:sqlite:" + path;
+    }
+
+    // Run work on a reader connection (query_only, shared with other threads via the pool)
+    public static <T> T read(SqlWork<T> work) throws SQLException {
+        Handle handle = borrowReader();
+        try {
+            return work.run(handle);
+        } finally {
+            returnReader(handle);
+        }
+    }
+
+    // Run work on the writer connection in autocommit mode
+    public static <T> T write(SqlWork<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            return work.run(writer());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Run work on the writer connection inside one transaction
+    public static <T> T transaction(SqlWork<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            Handle handle = writer();
+            Connection conn = handle.connection();
+            if (!conn.getAutoCommit()) return work.run(handle);  // already inside a transaction
+
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(handle);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Lock order is always writeLock, then the Database class monitor
+    public static void close() {
+        writeLock.lock();
+        try {
+            synchronized (Database.class) {
+                closeAll();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void closeAll() {
+        if (writer != null) writer.close();
+        writer = null;
+        for (Handle reader : readers) reader.close();
+        readers.clear();
+        idleReaders.clear();
+        generation++;
+    }
+
+    // Caller holds writeLock
+    private static Handle writer() throws SQLException {
+        if (writer == null) {
+            synchronized (Database.class) {
+                writer = open(false);
+            }
+        }
+        return writer;
+    }
+
+    private static Handle borrowReader() throws SQLException {
+        Handle handle = idleReaders.poll();
+        if (handle != null) return handle;
+
+        synchronized (Database.class) {
+            if (readers.size() < READER_POOL_SIZE) {
+                handle = open(true);
+                readers.add(handle);
+                return handle;
+            }
+        }
+        try {
+            return idleReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+    }
+
+    private static synchronized void returnReader(Handle handle) {
+        if (handle.generation == generation) {
+            idleReaders.offer(handle);
+        } else {
+            handle.close();  // database was reconfigured while this handle was in use
+        }
+    }
+
+    private static Handle open(boolean readOnly) throws SQLException {
+        Handle handle = new Handle(DriverManager.getConnection(url()), generation);
+        handle.execute("PRAGMA busy_timeout=5000");
+        handle.execute("PRAGMA journal_mode=WAL");      // readers never block the writer
+        handle.execute("PRAGMA synchronous=NORMAL");
+        handle.execute("PRAGMA cache_size=-65536");     // 64 MB page cache
+        handle.execute("PRAGMA mmap_size=268435456");   // 256 MB memory-mapped reads
+        handle.execute("PRAGMA temp_store=MEMORY");
+        handle.execute("PRAGMA recursive_triggers=ON");  // REPLACE fires delete triggers (index tombstones)
+        if (readOnly) {
+            handle.execute("PRAGMA query_only=1");
+        }
+        return handle;
+    }
+}
@@ -0,0 +1,93 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram with HdrHistogram-style log-linear buckets: values
+// below 32 ns get their own bucket, and every power of two above is split into 32
+// buckets, so any recorded value is reported within ~3% using under 2k counters for
+// the whole long range. record() is one array increment plus two adders.
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Records the time since startNanos (a System.nanoTime() reading)
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(count, sum.sum(), max.get(), copy);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        sum.reset();
+        max.reset();
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // Largest value that falls into the bucket
+    static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    // Point-in-time copy; values in nanoseconds
+    public record Snapshot(long count, long sum, long max, long[] counts) {
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Smallest bucket limit covering the given fraction (0..1) of the values
+        public long percentile(double fraction) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(bucketLimit(i), max);
+            }
+            return max;
+        }
+
+        // What was recorded after `earlier` (the max becomes the highest bucket limit reached)
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            long newCount = 0;
+            long newMax = 0;
+            for (int i = 0; i < counts.length; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+                newCount += delta[i];
+                if (delta[i] > 0) newMax = Math.min(bucketLimit(i), max);
+            }
+            return new Snapshot(newCount, sum - earlier.sum, newMax, delta);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package utils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+
+// The link graph as integer edges. Every url seen as a page or as a link target gets
+// a stable id in `urls` (pages.id changes when a page is re-crawled, so it can't key
+// links to pages that may not exist yet); `links` holds one (from_id, to_id) row per
+// distinct outbound link, clustered by source. Callers run on the writer connection,
+// inside the caller's transaction.
+public final class LinkStore {
+    static final String SCHEMA_SQL = """
+        CREATE TABLE IF NOT EXISTS urls (id INTEGER PRIMARY KEY, url TEXT UNIQUE NOT NULL);
+        CREATE TABLE IF NOT EXISTS links (
+            from_id INTEGER NOT NULL,
+            to_id INTEGER NOT NULL,
+            PRIMARY KEY (from_id, to_id)
+        ) WITHOUT ROWID;
+    """;
+
+    private LinkStore() {}
+
+    // Id for url, added on first sight
+    static long urlId(Database.Handle db, String url) throws SQLException {
+        PreparedStatement select = db.prepare("SELECT id FROM urls WHERE url = ?");
+        select.setString(1, url);
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) return rs.getLong(1);
+        }
+        PreparedStatement insert = db.prepare("INSERT INTO urls (url) VALUES (?) RETURNING id");
+        insert.setString(1, url);
+        try (ResultSet rs = insert.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // Replace url's outbound links with one batch of distinct edges (self-links dropped)
+    static void replaceLinks(Database.Handle db, String url, Collection<String> links) throws SQLException {
+        long from = urlId(db, url);
+        PreparedStatement delete = db.prepare("DELETE FROM links WHERE from_id = ?");
+        delete.setLong(1, from);
+        delete.executeUpdate();
+
+        long[] targets = new long[links.size()];
+        int count = 0;
+        for (String link : links) {
+            if (link.isBlank()) continue;
+            long to = urlId(db, link);
+            if (to != from) targets[count++] = to;
+        }
+        Arrays.sort(targets, 0, count);
+        PreparedStatement insert = db.prepare("INSERT OR IGNORE INTO links (from_id, to_id) VALUES (?, ?)");
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && targets[i] == targets[i - 1]) continue;
+            insert.setLong(1, from);
+            insert.setLong(2, targets[i]);
+            insert.addBatch();
+        }
+        try {
+            insert.executeBatch();
+        } finally {
+            insert.clearBatch();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and latency histograms, by name ("search.rank", "crawler.pages").
+// Look a metric up once and keep the reference: updates are then a LongAdder add or a
+// histogram record, cheap enough for per-query and per-page use. Read them in process
+// with counters(), histograms() and report(), or print them periodically with
+// startReporting(), which shows per-second rates and latencies for each interval.
+public final class Metrics {
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static long startNanos = System.nanoTime();
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {}
+
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    // Current totals, sorted by name
+    public static Map<String, Long> counters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    public static Map<String, LatencyHistogram.Snapshot> histograms() {
+        Map<String, LatencyHistogram.Snapshot> values = new TreeMap<>();
+        histograms.forEach((name, histogram) -> values.put(name, histogram.snapshot()));
+        return values;
+    }
+
+    // Zero everything in place (references held by callers stay valid)
+    public static synchronized void reset() {
+        counters.values().forEach(LongAdder::reset);
+        histograms.values().forEach(LatencyHistogram::reset);
+        startNanos = System.nanoTime();
+    }
+
+    // Everything since start (or the last reset), rates averaged over that time
+    public static synchronized String report() {
+        return format(counters(), Map.of(), histograms(), Map.of(), (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    // Print what changed every interval, until stopReporting()
+    public static synchronized void startReporting(long intervalMillis) {
+        if (reporter != null) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        Map<String, Long> lastCounters = new TreeMap<>(counters());
+        Map<String, LatencyHistogram.Snapshot> lastHistograms = new TreeMap<>(histograms());
+        long[] lastNanos = {System.nanoTime()};
+        reporter.scheduleAtFixedRate(() -> {
+            Map<String, Long> counterValues = counters();
+            Map<String, LatencyHistogram.Snapshot> histogramValues = histograms();
+            long now = System.nanoTime();
+            String text = format(counterValues, lastCounters, histogramValues, lastHistograms,
+                    (now - lastNanos[0]) / 1e9);
+            if (!text.isEmpty()) System.out.print(text);
+            lastCounters.putAll(counterValues);
+            lastHistograms.putAll(histogramValues);
+            lastNanos[0] = now;
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopReporting() {
+        if (reporter != null) reporter.shutdownNow();
+        reporter = null;
+    }
+
+    // Lines for metrics that changed since the `earlier` values; empty when none did
+    private static String format(Map<String, Long> counterValues, Map<String, Long> earlierCounters,
+                                 Map<String, LatencyHistogram.Snapshot> histogramValues,
+                                 Map<String, LatencyHistogram.Snapshot> earlierHistograms, double seconds) {
+        StringBuilder out = new StringBuilder();
+        counterValues.forEach((name, value) -> {
+            long delta = value - earlierCounters.getOrDefault(name, 0L);
+            if (delta == 0) return;
+            out.append(String.format("   %-28s %,14d  (%,.1f/s)%n", name, value, delta / Math.max(seconds, 1e-9)));
+        });
+        histogramValues.forEach((name, snapshot) -> {
+            LatencyHistogram.Snapshot earlier = earlierHistograms.get(name);
+            LatencyHistogram.Snapshot recent = earlier != null ? snapshot.since(earlier) : snapshot;
+            if (recent.count() == 0) return;
+            out.append(String.format("   %-28s n=%-9d mean=%s p50=%s p90=%s p99=%s max=%s%n", name,
+                    recent.count(), time(recent.mean()), time(recent.percentile(0.50)),
+                    time(recent.percentile(0.90)), time(recent.percentile(0.99)), time(recent.max())));
+        });
+        if (out.isEmpty()) return "";
+        return String.format("📈 Metrics over %.1fs:%n", seconds) + out;
+    }
+
+    private static String time(double nanos) {
+        if (nanos < 1_000) return String.format("%.0fns", nanos);
+        if (nanos < 1_000_000) return String.format("%.1fµs", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,99 @@
+package utils;
+
+import java.net.URI;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Collects crawled pages from any number of threads and writes them, with their
+// outbound links as integer edges (see LinkStore), in large transactions on the
+// shared writer connection (see BatchWriter). submit() blocks when the
+// queue is full, so crawlers slow down instead of piling pages up in memory.
+public class PageIngestor implements AutoCloseable {
+    private static final int DEFAULT_QUEUE_CAPACITY = 2_000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final LongAdder PAGES_WRITTEN = Metrics.counter("ingest.pages");
+    private static final LongAdder PAGES_FAILED = Metrics.counter("ingest.failed");
+    private static final LatencyHistogram BATCH_TIME = Metrics.histogram("ingest.batch");
+    static final String INSERT_PAGE_SQL =
+            "INSERT OR REPLACE INTO pages (url, title, content, domain) VALUES (?, ?, ?, ?)";
+
+    private record PendingPage(String url, String title, String content, String domain, List<String> links) {}
+
+    private final BatchWriter<PendingPage> writer;
+    private long pagesWritten = 0;  // by the writer thread; read after close()
+    private long transactions = 0;
+
+    public PageIngestor() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public PageIngestor(int queueCapacity, int batchSize) {
+        DBManager.initDB();  // schema + migrations, once per process start
+
+        this.writer = new BatchWriter<>("page-ingestor", queueCapacity, batchSize, this::writeBatch, this::failed);
+    }
+
+    // Queue a page for writing; blocks while the writer is behind (backpressure).
+    // Returns false if the page was lost instead: the calling thread was interrupted
+    // (its interrupt flag stays set), or the ingestor is closed or its writer has died.
+    public boolean submit(String url, String title, String content, List<String> links) {
+        PendingPage page = new PendingPage(url, title, content, domainOf(url), List.copyOf(links));
+        if (writer.put(page)) return true;
+        PAGES_FAILED.increment();
+        System.out.println("⚠️ Page not queued for writing: " + url);
+        return false;
+    }
+
+    // Wait until everything submitted so far is committed
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+        System.out.println("✅ Ingested " + pagesWritten + " pages in " + transactions + " transactions.");
+    }
+
+    // One transaction; BatchWriter retries a failed batch page by page
+    private void writeBatch(List<PendingPage> pages) throws SQLException {
+        long start = System.nanoTime();
+        Database.transaction(db -> {
+            PreparedStatement insert = db.prepare(INSERT_PAGE_SQL);
+            try {
+                for (PendingPage page : pages) {
+                    insert.setString(1, page.url());
+                    insert.setString(2, page.title());
+                    insert.setString(3, page.content());
+                    insert.setString(4, page.domain());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } finally {
+                insert.clearBatch();
+            }
+            for (PendingPage page : pages) LinkStore.replaceLinks(db, page.url(), page.links());
+            return null;
+        });
+        pagesWritten += pages.size();
+        transactions++;
+        PAGES_WRITTEN.add(pages.size());
+        BATCH_TIME.recordSince(start);
+    }
+
+    private void failed(PendingPage page, Exception e) {
+        PAGES_FAILED.increment();
+        System.out.println("❌ Could not save page " + page.url() + ": " + e.getMessage());
+    }
+
+    static String domainOf(String url) {
+        try {
+            String host = new URI(url).getHost();
+            return host != null ? host : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package utils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Logs searches without making them wait for SQLite. log() only enqueues; a
+// BatchWriter thread inserts the queries and each user's latest profile in batched
+// transactions. Unlike PageIngestor, a full queue drops the entry (counted in
+// querylog.dropped, as are entries that fail to write) instead of blocking,
+// because a search should never stall on its own log.
+public class QueryLog implements AutoCloseable {
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final DateTimeFormatter SQL_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC);  // as CURRENT_TIMESTAMP
+    private static final LongAdder LOGGED = Metrics.counter("querylog.queries");
+    private static final LongAdder DROPPED = Metrics.counter("querylog.dropped");
+    private static final LatencyHistogram BATCH_TIME = Metrics.histogram("querylog.batch");
+
+    private record Entry(String userId, String query, UserProfile profile, String timestamp) {}
+
+    private final BatchWriter<Entry> writer;
+
+    public QueryLog() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public QueryLog(int queueCapacity, int batchSize) {
+        DBManager.createUserQueryTable();
+
+        this.writer = new BatchWriter<>("query-log", queueCapacity, batchSize, this::writeBatch, this::failed);
+    }
+
+    // Queue a query and the user's updated profile (may be null); never blocks
+    public void log(String userId, String query, UserProfile profile) {
+        if (!writer.offer(new Entry(userId, query, profile, SQL_TIME.format(Instant.now())))) DROPPED.increment();
+    }
+
+    // Wait until everything logged so far is committed
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    // One transaction; BatchWriter retries a failed batch query by query
+    private void writeBatch(List<Entry> queries) throws SQLException {
+        long start = System.nanoTime();
+        // Profiles are cumulative, so only each user's last one in the batch needs writing
+        Map<String, UserProfile> profiles = new LinkedHashMap<>();
+        for (Entry entry : queries) {
+            if (entry.userId() != null && entry.profile() != null) profiles.put(entry.userId(), entry.profile());
+        }
+        Database.transaction(db -> {
+            PreparedStatement insert =
+                    db.prepare("INSERT INTO user_queries (user_id, query, timestamp) VALUES (?, ?, ?)");
+            try {
+                for (Entry entry : queries) {
+                    insert.setString(1, entry.userId());
+                    insert.setString(2, entry.query());
+                    insert.setString(3, entry.timestamp());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } finally {
+                insert.clearBatch();
+            }
+            for (Map.Entry<String, UserProfile> profile : profiles.entrySet()) {
+                UserProfiles.save(db, profile.getKey(), profile.getValue());
+            }
+            return null;
+        });
+        LOGGED.add(queries.size());
+        BATCH_TIME.recordSince(start);
+    }
+
+    private void failed(Entry entry, Exception e) {
+        DROPPED.increment();
+        System.out.println("⚠️ Could not log query '" + entry.query() + "': " + e.getMessage());
+    }
+}
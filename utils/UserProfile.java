@@ -0,0 +1,126 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// A user's interests as a small term -> weight vector. Each logged query adds 1 to
+// its terms after all existing weights decay with a half-life, so recent searches
+// dominate and the vector never grows past MAX_TERMS. Immutable; updates return a copy.
+// Terms are index terms: the query's positive terms as the search parsed them.
+public final class UserProfile {
+    public static final UserProfile EMPTY = new UserProfile(new String[0], new float[0], 0L);
+
+    static final int MAX_TERMS = 64;
+    static final double HALF_LIFE_MILLIS = 14 * 24 * 3600 * 1000.0;  // 2 weeks
+
+    private final String[] terms;
+    private final float[] weights;
+    private final long updatedAt;  // epoch millis the weights are valid at
+
+    private UserProfile(String[] terms, float[] weights, long updatedAt) {
+        this.terms = terms;
+        this.weights = weights;
+        this.updatedAt = updatedAt;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    public boolean isEmpty() {
+        return terms.length == 0;
+    }
+
+    public String term(int i) {
+        return terms[i];
+    }
+
+    // Weight relative to the strongest term (0..1]; decay scales every term
+    // equally, so relative weights don't change between updates
+    public float weight(int i) {
+        return weights[i] / weights[0];
+    }
+
+    public long updatedAt() {
+        return updatedAt;
+    }
+
+    public UserProfile withQuery(Collection<String> queryWords, long now) {
+        float decay = (float) Math.pow(0.5, Math.max(0, now - updatedAt) / HALF_LIFE_MILLIS);
+        Set<String> queryTerms = new LinkedHashSet<>(queryWords);
+        queryTerms.remove("");
+
+        int capacity = terms.length + queryTerms.size();
+        String[] newTerms = Arrays.copyOf(terms, capacity);
+        float[] newWeights = new float[capacity];
+        int n = terms.length;
+        for (int i = 0; i < n; i++) newWeights[i] = weights[i] * decay;
+        for (String term : queryTerms) {
+            int existing = indexOf(term);
+            if (existing >= 0) {
+                newWeights[existing] += 1f;
+            } else {
+                newTerms[n] = term;
+                newWeights[n++] = 1f;
+            }
+        }
+        return sorted(newTerms, newWeights, n, now);
+    }
+
+    private int indexOf(String term) {
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i].equals(term)) return i;
+        }
+        return -1;
+    }
+
+    // Strongest first, trimmed to MAX_TERMS
+    private static UserProfile sorted(String[] terms, float[] weights, int n, long updatedAt) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Float.compare(weights[b], weights[a]));
+        int size = Math.min(n, MAX_TERMS);
+        String[] keptTerms = new String[size];
+        float[] keptWeights = new float[size];
+        for (int i = 0; i < size; i++) {
+            keptTerms[i] = terms[order[i]];
+            keptWeights[i] = weights[order[i]];
+        }
+        return new UserProfile(keptTerms, keptWeights, updatedAt);
+    }
+
+    // Compact form for the user_profiles table: count, then (UTF term, float weight) pairs
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + terms.length * 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(terms.length);
+            for (int i = 0; i < terms.length; i++) {
+                out.writeUTF(terms[i]);
+                out.writeFloat(weights[i]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    static UserProfile decode(byte[] data, long updatedAt) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int n = in.readShort();
+            String[] terms = new String[n];
+            float[] weights = new float[n];
+            for (int i = 0; i < n; i++) {
+                terms[i] = in.readUTF();
+                weights[i] = in.readFloat();
+            }
+            return sorted(terms, weights, n, updatedAt);
+        }
+    }
+}
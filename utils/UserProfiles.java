@@ -0,0 +1,140 @@
+package utils;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Per-user personalization profiles: an LRU cache in front of the user_profiles
+// table. A profile is updated incrementally as each query is logged, so reading
+// it never touches the user's query history. queryTerms turns query text into the
+// profile's terms, the same way the index parses it (see Indexer).
+public class UserProfiles {
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final int BOOTSTRAP_QUERIES = 200;  // history replayed for users without a profile yet
+
+    private final Map<String, UserProfile> cache;
+    private final Function<String, List<String>> queryTerms;
+
+    public UserProfiles(Function<String, List<String>> queryTerms) {
+        this(queryTerms, DEFAULT_CACHE_SIZE);
+    }
+
+    public UserProfiles(Function<String, List<String>> queryTerms, int maxUsers) {
+        this.queryTerms = queryTerms;
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserProfile> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    // The user's profile, or EMPTY for anonymous users and when it could not be read
+    public UserProfile get(String userId) {
+        if (userId == null) return UserProfile.EMPTY;
+        UserProfile profile = cachedOrLoaded(userId);
+        return profile != null ? profile : UserProfile.EMPTY;
+    }
+
+    // Fold a new query into the user's profile and persist it
+    public UserProfile record(String userId, String query) {
+        UserProfile updated = update(userId, query);
+        if (updated == null) return UserProfile.EMPTY;  // stored profile unreadable: leave it alone
+        if (userId != null) save(userId, updated);
+        return updated;
+    }
+
+    // Fold a new query into the cached profile only; the caller persists it (see QueryLog).
+    // Returns null when the stored profile could not be read: nothing is cached, so the
+    // caller must neither personalize with nor persist a profile for this request.
+    public UserProfile update(String userId, String query) {
+        if (userId == null) return UserProfile.EMPTY;
+        UserProfile loaded = cachedOrLoaded(userId);
+        if (loaded == null) return null;
+        List<String> terms = queryTerms.apply(query);
+        synchronized (cache) {
+            UserProfile current = cache.getOrDefault(userId, loaded);  // may have moved on meanwhile
+            UserProfile updated = current.withQuery(terms, System.currentTimeMillis());
+            cache.put(userId, updated);
+            return updated;
+        }
+    }
+
+    // Cached profile, else the stored one, read outside the lock so one user's load never
+    // blocks another user. Null if it could not be read; that is not cached, so a later
+    // request tries again rather than overwriting the stored profile with an empty one.
+    private UserProfile cachedOrLoaded(String userId) {
+        synchronized (cache) {
+            UserProfile profile = cache.get(userId);
+            if (profile != null) return profile;
+        }
+        UserProfile loaded;
+        try {
+            loaded = load(userId);
+        } catch (SQLException e) {
+            System.out.println("⚠️ Could not load profile for " + userId + ": " + e.getMessage());
+            return null;
+        }
+        synchronized (cache) {
+            return cache.computeIfAbsent(userId, id -> loaded);
+        }
+    }
+
+    private UserProfile load(String userId) throws SQLException {
+        UserProfile stored = Database.read(db -> {
+            PreparedStatement ps = db.prepare("SELECT updated_at, profile FROM user_profiles WHERE user_id = ?");
+            ps.setString(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return UserProfile.decode(rs.getBytes("profile"), rs.getLong("updated_at"));
+            } catch (IOException e) {
+                throw new SQLException("Corrupt profile for " + userId, e);
+            }
+        });
+        return stored != null ? stored : bootstrap(userId);
+    }
+
+    // Build a profile from the user's most recent logged queries (pre-profile history)
+    private UserProfile bootstrap(String userId) throws SQLException {
+        return Database.read(db -> {
+            PreparedStatement ps = db.prepare(
+                "SELECT query, CAST(strftime('%s', timestamp) AS INTEGER) * 1000 FROM ("
+              + "SELECT query, timestamp FROM user_queries WHERE user_id = ? "
+              + "ORDER BY timestamp DESC LIMIT ?) ORDER BY timestamp"
+            );
+            ps.setString(1, userId);
+            ps.setInt(2, BOOTSTRAP_QUERIES);
+            UserProfile profile = UserProfile.EMPTY;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String query = rs.getString(1);
+                    if (query != null) profile = profile.withQuery(queryTerms.apply(query), Math.max(profile.updatedAt(), rs.getLong(2)));
+                }
+            }
+            return profile;
+        });
+    }
+
+    private static void save(String userId, UserProfile profile) {
+        try {
+            Database.write(db -> save(db, userId, profile));
+        } catch (SQLException e) {
+            System.out.println("❌ Error saving user profile: " + e.getMessage());
+        }
+    }
+
+    static int save(Database.Handle db, String userId, UserProfile profile) throws SQLException {
+        PreparedStatement ps = db.prepare(
+            "INSERT OR REPLACE INTO user_profiles (user_id, updated_at, profile) VALUES (?, ?, ?)"
+        );
+        ps.setString(1, userId);
+        ps.setLong(2, profile.updatedAt());
+        ps.setBytes(3, profile.encode());
+        return ps.executeUpdate();
+    }
+}